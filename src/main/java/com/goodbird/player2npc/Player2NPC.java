@@ -1,13 +1,29 @@
 package com.goodbird.player2npc;
 
+import com.goodbird.player2npc.command.Player2NPCCommand;
 import com.goodbird.player2npc.companion.AutomatoneEntity;
 import com.goodbird.player2npc.companion.CompanionManager;
+import com.goodbird.player2npc.companion.CompanionRegistry;
+import com.goodbird.player2npc.companion.CompanionSpawnQueue;
+import com.goodbird.player2npc.companion.CompanionTickGovernor;
+import com.goodbird.player2npc.companion.GreetingDispatcher;
+import com.goodbird.player2npc.companion.ItemEntityIndex;
 import com.goodbird.player2npc.network.AutomatoneDespawnRequestPacket;
+import com.goodbird.player2npc.network.AutomatoneInventoryRequestPacket;
 import com.goodbird.player2npc.network.AutomatoneSpawnRequestPacket;
+import com.goodbird.player2npc.network.CharacterDictionary;
+import com.goodbird.player2npc.network.CharacterRequestPacket;
+import com.goodbird.player2npc.util.TickProfiler;
 
 import adris.altoclef.AltoClefController;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.fabricmc.fabric.api.message.v1.ServerMessageEvents;
+import net.fabricmc.fabric.api.networking.v1.EntityTrackingEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.fabric.api.object.builder.v1.entity.FabricEntityTypeBuilder;
@@ -28,6 +44,10 @@ public class Player2NPC implements ModInitializer {
     public static final Identifier SPAWN_PACKET_ID = new Identifier(MOD_ID, "spawn_automatone");
     public static final Identifier SPAWN_REQUEST_PACKET_ID = new Identifier(MOD_ID, "request_spawn_automatone");
     public static final Identifier DESPAWN_REQUEST_PACKET_ID = new Identifier(MOD_ID, "request_despawn_automatone");
+    public static final Identifier CHARACTER_DEFINE_PACKET_ID = new Identifier(MOD_ID, "define_character");
+    public static final Identifier CHARACTER_REQUEST_PACKET_ID = new Identifier(MOD_ID, "request_character");
+    public static final Identifier INVENTORY_PACKET_ID = new Identifier(MOD_ID, "automatone_inventory");
+    public static final Identifier INVENTORY_REQUEST_PACKET_ID = new Identifier(MOD_ID, "request_automatone_inventory");
 
     public static Identifier id(String path) {
         return new Identifier(MOD_ID, path);
@@ -39,8 +59,8 @@ public class Player2NPC implements ModInitializer {
             .defaultAttributes(ZombieEntity::createAttributes)
             .dimensions(EntityDimensions.changing(EntityType.PLAYER.getWidth(), EntityType.PLAYER.getHeight()))
             .trackRangeBlocks(64)
-            .trackedUpdateRate(1)
-            .forceTrackedVelocityUpdates(true)
+            .trackedUpdateRate(1) // Throttled per companion by CompanionTrackingPolicy
+            .forceTrackedVelocityUpdates(false) // Velocity is marked dirty by CompanionTrackingPolicy when it changes
             .build();
 
     @Override
@@ -49,15 +69,51 @@ public class Player2NPC implements ModInitializer {
 
         ServerPlayNetworking.registerGlobalReceiver(SPAWN_REQUEST_PACKET_ID, AutomatoneSpawnRequestPacket::handle);
         ServerPlayNetworking.registerGlobalReceiver(DESPAWN_REQUEST_PACKET_ID, AutomatoneDespawnRequestPacket::handle);
+        ServerPlayNetworking.registerGlobalReceiver(CHARACTER_REQUEST_PACKET_ID, CharacterRequestPacket::handle);
+        ServerPlayNetworking.registerGlobalReceiver(INVENTORY_REQUEST_PACKET_ID, AutomatoneInventoryRequestPacket::handle);
 
         ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
             CompanionManager.KEY.get(handler.player).summonAllCompanionsAsync();
         });
         ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
-            CompanionManager.KEY.get(handler.player).dismissAllCompanions();
+            CompanionSpawnQueue.onDisconnect(handler.player);
+            GreetingDispatcher.onDisconnect(handler.player);
+            CompanionManager.KEY.get(handler.player).parkAllCompanions();
+            CharacterDictionary.onDisconnect(handler.player);
         });
+        EntityTrackingEvents.START_TRACKING.register((trackedEntity, player) -> {
+            if (trackedEntity instanceof AutomatoneEntity companion && companion.getCharacter() != null) {
+                CharacterDictionary.ensureSent(player, companion.getCharacter(), companion.getCharacterHash());
+            }
+        });
+        ServerMessageEvents.CHAT_MESSAGE.register((message, sender, params) -> {
+            CompanionManager.KEY.get(sender).wakeCompanions("owner chat");
+            AutomatoneEntity.wakeNearby(sender, "nearby chat");
+        });
+        ServerMessageEvents.COMMAND_MESSAGE.register((message, source, params) -> {
+            if (source.getPlayer() != null) {
+                CompanionManager.KEY.get(source.getPlayer()).wakeCompanions("owner command");
+            }
+        });
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
+            Player2NPCCommand.register(dispatcher);
+        });
+        ServerEntityEvents.ENTITY_LOAD.register(ItemEntityIndex::onEntityLoad);
+        ServerEntityEvents.ENTITY_UNLOAD.register(ItemEntityIndex::onEntityUnload);
+        ServerEntityEvents.ENTITY_LOAD.register(CompanionRegistry::onEntityLoad);
+        ServerEntityEvents.ENTITY_UNLOAD.register(CompanionRegistry::onEntityUnload);
+        ServerTickEvents.START_WORLD_TICK.register(ItemEntityIndex::onWorldTick);
+        ServerTickEvents.START_SERVER_TICK.register(CompanionTickGovernor::onStartTick);
+        ServerTickEvents.START_SERVER_TICK.register(CompanionSpawnQueue::tick);
+        ServerLifecycleEvents.SERVER_STOPPED.register(CompanionSpawnQueue::onServerStopped);
+        ServerWorldEvents.UNLOAD.register((server, world) -> ItemEntityIndex.onWorldUnload(world));
+        ServerLifecycleEvents.SERVER_STOPPED.register(GreetingDispatcher::onServerStopped);
         ServerTickEvents.END_SERVER_TICK.register(server -> {
+            GreetingDispatcher.tick(server);
+            long profileStart = TickProfiler.start();
             AltoClefController.staticServerTick(server);
+            TickProfiler.end(TickProfiler.Phase.STATIC_SERVER_TICK, profileStart);
+            CompanionTickGovernor.onEndTick(server);
         });
     }
 }
@@ -2,13 +2,24 @@ package com.goodbird.player2npc;
 
 import com.goodbird.player2npc.client.gui.CharacterSelectionScreen;
 import com.goodbird.player2npc.client.render.RenderAutomaton;
+import com.goodbird.player2npc.client.util.SkinDiskCache;
+import com.goodbird.player2npc.client.util.SkinPipeline;
+import com.goodbird.player2npc.command.Player2NPCClientCommand;
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import com.goodbird.player2npc.network.AutomatoneInventoryPacket;
 import com.goodbird.player2npc.network.AutomatonSpawnPacket;
+import com.goodbird.player2npc.network.CharacterDefinePacket;
 import com.mojang.blaze3d.platform.InputUtil;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientEntityEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.client.rendering.v1.EntityRendererRegistry;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
 import net.minecraft.client.option.KeyBind;
 import org.lwjgl.glfw.GLFW;
 
@@ -20,8 +31,22 @@ public class Player2NPCClient implements ClientModInitializer {
     @Override
     public void onInitializeClient() {
         EntityRendererRegistry.register(Player2NPC.AUTOMATONE, RenderAutomaton::new);
+        WorldRenderEvents.START.register(context -> SkinPipeline.uploadPending());
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> SkinDiskCache.get().save());
+        ClientTickEvents.END_CLIENT_TICK.register(client -> SkinPipeline.evictUnused());
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> Player2NPCClientCommand.register(dispatcher));
+        ClientEntityEvents.ENTITY_UNLOAD.register((entity, world) -> {
+            if (entity instanceof AutomatoneEntity npc && npc.skinReference != null) {
+                SkinPipeline.release(npc.skinReference);
+                npc.skinReference = null;
+                npc.textureLocation = null;
+            }
+        });
 
         ClientPlayNetworking.registerGlobalReceiver(Player2NPC.SPAWN_PACKET_ID, AutomatonSpawnPacket::handle);
+        ClientPlayNetworking.registerGlobalReceiver(Player2NPC.CHARACTER_DEFINE_PACKET_ID, CharacterDefinePacket::handle);
+        ClientPlayNetworking.registerGlobalReceiver(Player2NPC.INVENTORY_PACKET_ID, AutomatoneInventoryPacket::handle);
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(AutomatonSpawnPacket::onClientDisconnect));
         openCharacterScreenKeybind = KeyBindingHelper.registerKeyBinding(new KeyBind(
                 "key.player2npc.open_character_screen",
                 InputUtil.Type.KEYSYM,
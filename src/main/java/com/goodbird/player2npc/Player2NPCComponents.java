@@ -1,16 +1,27 @@
 package com.goodbird.player2npc;
 
 import baritone.KeepName;
+import com.goodbird.player2npc.companion.CharacterTable;
 import com.goodbird.player2npc.companion.CompanionManager;
+import com.goodbird.player2npc.companion.CompanionRegistry;
 import dev.onyxstudios.cca.api.v3.entity.EntityComponentFactoryRegistry;
 import dev.onyxstudios.cca.api.v3.entity.EntityComponentInitializer;
+import dev.onyxstudios.cca.api.v3.world.WorldComponentFactoryRegistry;
+import dev.onyxstudios.cca.api.v3.world.WorldComponentInitializer;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.world.World;
 
 @KeepName
-public final class Player2NPCComponents implements EntityComponentInitializer {
+public final class Player2NPCComponents implements EntityComponentInitializer, WorldComponentInitializer {
 
     @Override
     public void registerEntityComponentFactories(EntityComponentFactoryRegistry registry) {
         registry.registerFor(ServerPlayerEntity.class, CompanionManager.KEY, CompanionManager::new);
     }
+
+    @Override
+    public void registerWorldComponentFactories(WorldComponentFactoryRegistry registry) {
+        registry.registerFor(World.OVERWORLD, CompanionRegistry.KEY, CompanionRegistry::new);
+        registry.registerFor(World.OVERWORLD, CharacterTable.KEY, CharacterTable::new);
+    }
 }
@@ -0,0 +1,237 @@
+package com.goodbird.player2npc.api;
+
+import adris.altoclef.player2api.Character;
+import adris.altoclef.player2api.utils.CharacterUtils;
+import com.goodbird.player2npc.config.ConfigManager;
+import net.minecraft.entity.player.PlayerEntity;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking Player2 API calls on a small dedicated pool instead of the common pool.
+ * <p>
+ * Every call gets a timeout. The pool size is the global concurrency limit and the bounded
+ * queue rejects calls once it's full. A circuit breaker opens after a number of consecutive
+ * failed, timed out or slow calls and fails new calls right away until it lets a single trial
+ * call through. Latency, queue wait and outcome counters are kept for /player2npc api.
+ */
+public final class Player2ApiClient {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final String GAME_ID = "player2-ai-npc-minecraft";
+
+    public enum BreakerState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static ThreadPoolExecutor executor;
+
+    // Circuit breaker, guarded by the class lock
+    private static BreakerState breakerState = BreakerState.CLOSED;
+    private static int consecutiveFailures = 0;
+    private static long openUntil = 0;
+    private static boolean trialInFlight = false;
+
+    private static final AtomicLong calls = new AtomicLong();
+    private static final AtomicLong succeeded = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong timedOut = new AtomicLong();
+    private static final AtomicLong slow = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong shortCircuited = new AtomicLong();
+    private static final AtomicLong latencyTotalNanos = new AtomicLong();
+    private static final AtomicLong latencyMaxNanos = new AtomicLong();
+    private static final AtomicLong queueWaitTotalNanos = new AtomicLong();
+    private static final AtomicLong queueWaitSamples = new AtomicLong();
+
+    private Player2ApiClient() {
+    }
+
+    public static CompletableFuture<Character[]> requestCharacters(PlayerEntity player) {
+        return submit("requestCharacters", () -> CharacterUtils.requestCharacters(player, GAME_ID));
+    }
+
+    /**
+     * Runs a blocking API call on the pool. The returned future completes on a pool thread, or
+     * exceptionally with a {@link TimeoutException} once the call took longer than the timeout.
+     */
+    public static <T> CompletableFuture<T> submit(String name, Supplier<T> call) {
+        if (!tryAcquire()) {
+            shortCircuited.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("Player2 API circuit breaker is open, skipped " + name));
+        }
+        calls.incrementAndGet();
+        long submitted = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = getExecutor().submit(() -> {
+                queueWaitTotalNanos.addAndGet(System.nanoTime() - submitted);
+                queueWaitSamples.incrementAndGet();
+                try {
+                    future.complete(call.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            releaseTrial();
+            LOGGER.warn("Player2 API queue is full, rejected {}", name);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        future.orTimeout(ConfigManager.getPlayer2ApiTimeoutMs(), TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            long latency = System.nanoTime() - submitted;
+            latencyTotalNanos.addAndGet(latency);
+            latencyMaxNanos.accumulateAndGet(latency, Math::max);
+            if (error instanceof TimeoutException) {
+                timedOut.incrementAndGet();
+                task.cancel(true);
+                LOGGER.warn("Player2 API call {} timed out after {} ms", name, ConfigManager.getPlayer2ApiTimeoutMs());
+                onFailure();
+            } else if (error != null) {
+                failed.incrementAndGet();
+                onFailure();
+            } else if (latency > TimeUnit.MILLISECONDS.toNanos(ConfigManager.getPlayer2ApiSlowCallMs())) {
+                succeeded.incrementAndGet();
+                slow.incrementAndGet();
+                onFailure();
+            } else {
+                succeeded.incrementAndGet();
+                onSuccess();
+            }
+        });
+        return future;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            int threads = ConfigManager.getPlayer2ApiThreads();
+            AtomicInteger index = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(ConfigManager.getPlayer2ApiQueueCapacity()), runnable -> {
+                Thread thread = new Thread(runnable, "Player2NPC-Api-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    private static synchronized boolean tryAcquire() {
+        switch (breakerState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                LOGGER.info("Player2 API circuit breaker half open, sending a trial call");
+                breakerState = BreakerState.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    private static synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    private static synchronized void onSuccess() {
+        if (breakerState != BreakerState.CLOSED) {
+            LOGGER.info("Player2 API circuit breaker closed");
+        }
+        breakerState = BreakerState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    private static synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (breakerState == BreakerState.HALF_OPEN
+                || (breakerState == BreakerState.CLOSED && consecutiveFailures >= ConfigManager.getPlayer2ApiBreakerFailures())) {
+            breakerState = BreakerState.OPEN;
+            openUntil = System.currentTimeMillis() + ConfigManager.getPlayer2ApiBreakerOpenSeconds() * 1000L;
+            LOGGER.warn("Player2 API circuit breaker open for {}s after {} failed or slow calls",
+                    ConfigManager.getPlayer2ApiBreakerOpenSeconds(), consecutiveFailures);
+        }
+    }
+
+    public static synchronized BreakerState getBreakerState() {
+        return breakerState;
+    }
+
+    public static int getQueueDepth() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getQueue().size();
+    }
+
+    public static int getActiveCalls() {
+        ThreadPoolExecutor current = executor;
+        return current == null ? 0 : current.getActiveCount();
+    }
+
+    public static long getCalls() {
+        return calls.get();
+    }
+
+    public static long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public static long getFailed() {
+        return failed.get();
+    }
+
+    public static long getTimedOut() {
+        return timedOut.get();
+    }
+
+    public static long getSlow() {
+        return slow.get();
+    }
+
+    public static long getRejected() {
+        return rejected.get();
+    }
+
+    public static long getShortCircuited() {
+        return shortCircuited.get();
+    }
+
+    public static long getMeanLatencyNanos() {
+        long completed = succeeded.get() + failed.get() + timedOut.get();
+        return completed == 0 ? 0 : latencyTotalNanos.get() / completed;
+    }
+
+    public static long getMaxLatencyNanos() {
+        return latencyMaxNanos.get();
+    }
+
+    public static long getMeanQueueWaitNanos() {
+        long samples = queueWaitSamples.get();
+        return samples == 0 ? 0 : queueWaitTotalNanos.get() / samples;
+    }
+}
@@ -2,6 +2,7 @@ package com.goodbird.player2npc.client.gui;
 
 import adris.altoclef.player2api.Character;
 import com.goodbird.player2npc.client.util.SkinManager;
+import com.goodbird.player2npc.client.util.SkinPipeline;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.screen.narration.NarrationMessageBuilder;
@@ -16,11 +17,22 @@ public class CharacterCardWidget extends ClickableWidget {
     private final Character character;
     private final Consumer<Character> onClick;
     private final int BACKGROUND_COLOR = 0xFF181825;
+    private boolean holdsSkin;
 
     public CharacterCardWidget(int x, int y, int width, int height, Character character, Consumer<Character> onClick) {
         super(x, y, width, height, Text.of(character.name()));
         this.character = character;
         this.onClick = onClick;
+        SkinPipeline.acquire(character.skinURL());
+        this.holdsSkin = true;
+    }
+
+    // Lets the skin texture be evicted, called by the screen once the card is gone
+    public void release() {
+        if (holdsSkin) {
+            holdsSkin = false;
+            SkinPipeline.release(character.skinURL());
+        }
     }
 
     @Override
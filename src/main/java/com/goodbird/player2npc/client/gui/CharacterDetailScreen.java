@@ -2,6 +2,7 @@ package com.goodbird.player2npc.client.gui;
 
 import adris.altoclef.player2api.Character;
 import com.goodbird.player2npc.client.util.SkinManager;
+import com.goodbird.player2npc.client.util.SkinPipeline;
 import com.goodbird.player2npc.network.AutomatoneDespawnRequestPacket;
 import com.goodbird.player2npc.network.AutomatoneSpawnRequestPacket;
 import net.minecraft.client.gui.GuiGraphics;
@@ -18,6 +19,7 @@ public class CharacterDetailScreen extends Screen {
 
     private final Screen parent;
     private final Character character;
+    private boolean holdsSkin;
 
     public CharacterDetailScreen(Screen parent, Character character) {
         super(Text.of("Character Details"));
@@ -28,6 +30,10 @@ public class CharacterDetailScreen extends Screen {
     @Override
     protected void init() {
         super.init();
+        if (!holdsSkin) {
+            holdsSkin = true;
+            SkinPipeline.acquire(character.skinURL());
+        }
 
         this.addDrawableChild(ButtonWidget.builder(Text.of("Summon"), button -> {
             System.out.println("Summoning: " + character.name());
@@ -72,4 +78,12 @@ public class CharacterDetailScreen extends Screen {
 
         super.render(graphics, mouseX, mouseY, delta);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void removed() {
+        if (holdsSkin) {
+            holdsSkin = false;
+            SkinPipeline.release(character.skinURL());
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.goodbird.player2npc.client.gui;
 
 import adris.altoclef.player2api.Character;
-import adris.altoclef.player2api.utils.CharacterUtils;
+import com.goodbird.player2npc.api.Player2ApiClient;
+import com.goodbird.player2npc.client.util.SkinPipeline;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.screen.Screen;
@@ -9,12 +10,14 @@ import net.minecraft.text.Text;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CharacterSelectionScreen extends Screen {
     private static final Logger LOGGER = LogManager.getLogger();
 
     private Character[] characters = null;
+    private final List<CharacterCardWidget> cards = new ArrayList<>();
     private boolean isLoading = true;
     private String errorMessage = null;
     private long loadStartTime = 0;
@@ -27,6 +30,7 @@ public class CharacterSelectionScreen extends Screen {
     @Override
     protected void init() {
         super.init();
+        this.releaseCards();
         this.clearChildren();
         isLoading = true;
         errorMessage = null;
@@ -39,19 +43,17 @@ public class CharacterSelectionScreen extends Screen {
             return;
         }
 
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return CharacterUtils.requestCharacters(client.player, "player2-ai-npc-minecraft");
-            } catch (Exception e) {
-                LOGGER.error("Failed to request characters", e);
-                throw new RuntimeException("Failed to load characters: " + e.getMessage(), e);
-            }
-        })
+        Player2ApiClient.requestCharacters(client.player)
         .thenAcceptAsync(result -> {
             if (result == null || result.length == 0) {
                 errorMessage = "No characters available";
             } else {
                 this.characters = result;
+                for (Character character : result) {
+                    if (character != null) {
+                        SkinPipeline.prefetch(character.skinURL());
+                    }
+                }
                 client.execute(this::createCharacterCards);
             }
             this.isLoading = false;
@@ -66,6 +68,8 @@ public class CharacterSelectionScreen extends Screen {
 
     private void createCharacterCards() {
         if (characters == null || characters.length == 0) return;
+        // The cards hold skin references, don't create them for a screen that was already closed
+        if (this.client == null || this.client.currentScreen != this) return;
 
         int cardWidth = 100;
         int cardHeight = 130;
@@ -81,7 +85,7 @@ public class CharacterSelectionScreen extends Screen {
 
         for (Character character : characters) {
             if (character != null) {
-                this.addDrawableChild(new CharacterCardWidget(currentX, currentY, cardWidth, cardHeight, character, this::onCharacterClicked));
+                this.cards.add(this.addDrawableChild(new CharacterCardWidget(currentX, currentY, cardWidth, cardHeight, character, this::onCharacterClicked)));
 
                 currentX += cardWidth + padding;
                 if (currentX + cardWidth > startX + totalWidth) {
@@ -92,6 +96,18 @@ public class CharacterSelectionScreen extends Screen {
         }
     }
 
+    private void releaseCards() {
+        for (CharacterCardWidget card : cards) {
+            card.release();
+        }
+        cards.clear();
+    }
+
+    @Override
+    public void removed() {
+        this.releaseCards();
+    }
+
     private void onCharacterClicked(Character character) {
         if (this.client != null && character != null) {
             this.client.setScreen(new CharacterDetailScreen(this, character));
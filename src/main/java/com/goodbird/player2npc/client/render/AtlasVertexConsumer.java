@@ -0,0 +1,83 @@
+package com.goodbird.player2npc.client.render;
+
+import com.goodbird.player2npc.client.util.SkinAtlas;
+import net.minecraft.client.render.VertexConsumer;
+
+/**
+ * Forwards to another consumer, moving texture coordinates from a whole skin into the skin's
+ * slot of an atlas page.
+ */
+public class AtlasVertexConsumer implements VertexConsumer {
+    private final VertexConsumer delegate;
+    private final float minU;
+    private final float minV;
+    private final float scaleU;
+    private final float scaleV;
+
+    public AtlasVertexConsumer(VertexConsumer delegate, SkinAtlas.Slot slot) {
+        this.delegate = delegate;
+        this.minU = slot.getMinU();
+        this.minV = slot.getMinV();
+        this.scaleU = slot.getScaleU();
+        this.scaleV = slot.getScaleV();
+    }
+
+    @Override
+    public VertexConsumer vertex(double x, double y, double z) {
+        delegate.vertex(x, y, z);
+        return this;
+    }
+
+    @Override
+    public VertexConsumer color(int red, int green, int blue, int alpha) {
+        delegate.color(red, green, blue, alpha);
+        return this;
+    }
+
+    @Override
+    public VertexConsumer texture(float u, float v) {
+        delegate.texture(minU + u * scaleU, minV + v * scaleV);
+        return this;
+    }
+
+    @Override
+    public VertexConsumer overlay(int u, int v) {
+        delegate.overlay(u, v);
+        return this;
+    }
+
+    @Override
+    public VertexConsumer light(int u, int v) {
+        delegate.light(u, v);
+        return this;
+    }
+
+    @Override
+    public VertexConsumer normal(float x, float y, float z) {
+        delegate.normal(x, y, z);
+        return this;
+    }
+
+    @Override
+    public void next() {
+        delegate.next();
+    }
+
+    // Model parts use this bulk call, buffer builders override it with a fast path
+    @Override
+    public void vertex(float x, float y, float z, float red, float green, float blue, float alpha, float u, float v,
+                       int overlay, int light, float normalX, float normalY, float normalZ) {
+        delegate.vertex(x, y, z, red, green, blue, alpha, minU + u * scaleU, minV + v * scaleV,
+                overlay, light, normalX, normalY, normalZ);
+    }
+
+    @Override
+    public void fixedColor(int red, int green, int blue, int alpha) {
+        delegate.fixedColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void unfixColor() {
+        delegate.unfixColor();
+    }
+}
@@ -1,9 +1,10 @@
 package com.goodbird.player2npc.client.render;
 
-import com.goodbird.player2npc.client.util.ImageDownloadAlt;
-import com.goodbird.player2npc.client.util.ResourceDownloader;
+import com.goodbird.player2npc.client.util.SkinAtlas;
+import com.goodbird.player2npc.client.util.SkinPipeline;
 import com.goodbird.player2npc.companion.AutomatoneEntity;
-import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.render.entity.EntityRendererFactory;
 import net.minecraft.client.render.entity.LivingEntityRenderer;
@@ -18,8 +19,6 @@ import net.minecraft.client.render.entity.model.BipedArmorEntityModel;
 import net.minecraft.client.render.entity.model.BipedEntityModel;
 import net.minecraft.client.render.entity.model.EntityModelLayers;
 import net.minecraft.client.render.entity.model.PlayerEntityModel;
-import net.minecraft.client.texture.AbstractTexture;
-import net.minecraft.client.texture.TextureManager;
 import net.minecraft.client.util.DefaultSkinHelper;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.item.CrossbowItem;
@@ -33,8 +32,6 @@ import net.minecraft.util.math.Axis;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 
-import java.io.File;
-
 public class RenderAutomaton extends LivingEntityRenderer<AutomatoneEntity, PlayerEntityModel<AutomatoneEntity>> {
     public RenderAutomaton(EntityRendererFactory.Context ctx) {
         super(ctx, new PlayerEntityModel(ctx.getPart(EntityModelLayers.PLAYER), false), 0.5F);
@@ -48,13 +45,31 @@ public class RenderAutomaton extends LivingEntityRenderer<AutomatoneEntity, Play
         this.addFeature(new StuckStingersFeatureRenderer(this));
     }
 
+    // Layer of the skin for the companion being rendered, set by getRenderLayer
+    private RenderLayer skinLayer;
+
     public void render(AutomatoneEntity automatoneEntity, float f, float g, MatrixStack matrixStack, VertexConsumerProvider vertexConsumerProvider, int i) {
         try {
             this.setModelPose(automatoneEntity);
-            super.render(automatoneEntity, f, g, matrixStack, vertexConsumerProvider, i);
+            SkinAtlas.Slot slot = SkinAtlas.get(this.resolveSkin(automatoneEntity));
+            VertexConsumerProvider provider = vertexConsumerProvider;
+            if (slot != null) {
+                // Only the skin layer samples the atlas, armor and held items keep their own UVs
+                provider = layer -> {
+                    VertexConsumer buffer = vertexConsumerProvider.getBuffer(layer);
+                    return layer == this.skinLayer ? new AtlasVertexConsumer(buffer, slot) : buffer;
+                };
+            }
+            super.render(automatoneEntity, f, g, matrixStack, provider, i);
         }catch (Exception ignored){}
     }
 
+    @Override
+    protected RenderLayer getRenderLayer(AutomatoneEntity entity, boolean showBody, boolean translucent, boolean showOutline) {
+        this.skinLayer = super.getRenderLayer(entity, showBody, translucent, showOutline);
+        return this.skinLayer;
+    }
+
     public Vec3d getPositionOffset(AutomatoneEntity automatoneEntity, float f) {
         return automatoneEntity.isInSneakingPose() ? new Vec3d((double) 0.0F, (double) -0.125F, (double) 0.0F) : super.getPositionOffset(automatoneEntity, f);
     }
@@ -135,27 +150,28 @@ public class RenderAutomaton extends LivingEntityRenderer<AutomatoneEntity, Play
 
     @Override
     public Identifier getTexture(AutomatoneEntity npc) {
-        if (npc.textureLocation == null) {
-            try {
-                boolean fixSkin = true;
-                File file = ResourceDownloader.getUrlFile(npc.getCharacter().skinURL(), fixSkin);
-                npc.textureLocation = ResourceDownloader.getUrlResourceLocation(npc.getCharacter().skinURL(), fixSkin);
-                this.loadSkin(file, npc.textureLocation, npc.getCharacter().skinURL(), fixSkin);
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+        Identifier skin = this.resolveSkin(npc);
+        if (skin == null) {
+            return DefaultSkinHelper.getTexture();
         }
-
-        return npc.textureLocation == null ? DefaultSkinHelper.getTexture() : npc.textureLocation;
+        // Companions on the same atlas page share one render layer
+        SkinAtlas.Slot slot = SkinAtlas.get(skin);
+        return slot != null ? slot.getPageTexture() : skin;
     }
 
-    private void loadSkin(File file, Identifier resource, String par1Str, boolean fix64) {
-        TextureManager texturemanager = MinecraftClient.getInstance().getTextureManager();
-        AbstractTexture object = texturemanager.getOrDefault(resource, (AbstractTexture) null);
-        if (object == null) {
-            ResourceDownloader.load(new ImageDownloadAlt(file, par1Str, resource, DefaultSkinHelper.getTexture(), fix64, () -> {
-            }));
+    // The companion's own skin texture, null until it's uploaded
+    private Identifier resolveSkin(AutomatoneEntity npc) {
+        if (npc.textureLocation == null && npc.getCharacter() != null) {
+            String url = npc.getCharacter().skinURL();
+            if (npc.skinReference == null) {
+                npc.skinReference = url;
+                SkinPipeline.acquire(url);
+            }
+            // Stays null until the skin is uploaded, SkinPipeline does the loading off-thread
+            npc.textureLocation = SkinPipeline.getTexture(url);
         }
+
+        return npc.textureLocation;
     }
 
     protected void scale(AutomatoneEntity automatoneEntity, MatrixStack matrixStack, float f) {
@@ -1,120 +1,26 @@
 package com.goodbird.player2npc.client.util;
 
-import com.mojang.blaze3d.platform.TextureUtil;
-import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.texture.NativeImage;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.texture.ResourceTexture;
-import net.minecraft.resource.ResourceManager;
-import net.minecraft.util.Identifier;
-import org.apache.commons.io.FileUtils;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 
+/**
+ * Skin image helpers. Loading and uploading skins is done by {@link SkinPipeline}.
+ */
 @Environment(EnvType.CLIENT)
-public class ImageDownloadAlt extends ResourceTexture {
-    private static final Logger logger = LogManager.getLogger();
-    public final File cacheFile;
-    private final String imageUrl;
-    private boolean fix64;
-    private Runnable r;
-    public final Identifier location;
-    public boolean uploaded = false;
-
-    public ImageDownloadAlt(File file, String url, Identifier location, Identifier defaultLocation, boolean fix64, Runnable r) {
-        super(defaultLocation);
-        this.location = location;
-        this.cacheFile = file;
-        this.imageUrl = url;
-        this.fix64 = fix64;
-        this.r = r;
-    }
-
-    public void setImage(NativeImage image) {
-        MinecraftClient.getInstance().execute(() -> {
-            this.uploaded = true;
-            if (!RenderSystem.isOnRenderThread()) {
-                RenderSystem.recordRenderCall(() -> this.upload(image));
-            } else {
-                this.upload(image);
-            }
-
-            this.r.run();
-        });
-    }
-
-    private void upload(NativeImage imageIn) {
-        TextureUtil.prepareImage(this.getGlId(), imageIn.getWidth(), imageIn.getHeight());
-        imageIn.upload(0, 0, 0, true);
-    }
-
-    public void load(ResourceManager resourceManager) throws IOException {
-        if (this.cacheFile != null && this.cacheFile.isFile()) {
-            logger.debug("Loading http texture from local cache ({})", new Object[]{this.cacheFile});
-            NativeImage image = null;
-
-            try {
-                image = NativeImage.read(new FileInputStream(this.cacheFile));
-                this.setImage(this.parseUserSkin(image));
-                return;
-            } catch (IOException ioexception) {
-                super.load(resourceManager);
-                logger.error("Couldn't load skin {}", this.cacheFile, ioexception);
-            }
-        }
-
-        if (!this.uploaded) {
-            try {
-                this.uploaded = true;
-                super.load(resourceManager);
-            } catch (Exception ignored) {
-            }
-        }
-
-    }
-
-    public void loadTextureFromServer() {
-        HttpURLConnection connection = null;
-        logger.debug("Downloading http texture from {} to {}", new Object[]{this.imageUrl, this.cacheFile});
-
-        try {
-            connection = (HttpURLConnection) (new URL(this.imageUrl)).openConnection();
-            connection.setDoInput(true);
-            connection.setDoOutput(false);
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 5.1; rv:19.0) Gecko/20100101 Firefox/19.0");
-            connection.connect();
-            String type = connection.getContentType();
-            long size = connection.getContentLengthLong();
-            if (connection.getResponseCode() / 100 == 2 && type.equals("image/png") && (size <= 2000000L || MinecraftClient.getInstance().isIntegratedServerRunning())) {
-                FileUtils.copyInputStreamToFile(connection.getInputStream(), this.cacheFile);
-            }
-        } catch (Exception exception) {
-            logger.error("Couldn't download http texture", exception);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-
-        }
-
+public final class ImageDownloadAlt {
+    private ImageDownloadAlt() {
     }
 
-    public NativeImage parseUserSkin(NativeImage image) {
+    // Converts legacy 64x32 skins to 64x64, doesn't touch OpenGL so it can run off the render thread
+    public static NativeImage parseUserSkin(NativeImage image, boolean fix64) {
         if (image.getHeight() != image.getWidth() && image.getWidth() / 2 != image.getHeight()) {
             int var10002 = image.getWidth();
             throw new IllegalArgumentException("Invalid texture size: " + var10002 + "x" + image.getHeight());
         } else {
             int scale = image.getWidth() / 64;
             boolean lvt_2_1_ = image.getHeight() != image.getWidth();
-            if (lvt_2_1_ && this.fix64) {
+            if (lvt_2_1_ && fix64) {
                 NativeImage nativeImage = new NativeImage(64 * scale, 64 * scale, true);
                 nativeImage.copyFrom(image);
                 image.close();
@@ -134,7 +40,7 @@ public class ImageDownloadAlt extends ResourceTexture {
                 nativeImage.copyRectangle(52 * scale, 20 * scale, -8 * scale, 32 * scale, 4 * scale, 12 * scale, true, false);
             }
 
-            if (lvt_2_1_ && this.fix64) {
+            if (lvt_2_1_ && fix64) {
                 setAreaTransparent(image, 32 * scale, 0, 64 * scale, 32 * scale);
             }
 
@@ -0,0 +1,198 @@
+package com.goodbird.player2npc.client.util;
+
+import com.goodbird.player2npc.config.ConfigManager;
+import com.mojang.blaze3d.texture.NativeImage;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.client.texture.TextureManager;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional shared atlas for companion skins (SKIN_ATLAS_ENABLED), render thread only.
+ * <p>
+ * Uploaded skins are copied into atlas pages laid out by {@link SkinAtlasAllocator}.
+ * Companions whose skins share a page also share a render layer, so consecutive companions
+ * are drawn from one buffer with a single texture bind. RenderAutomaton remaps the model's
+ * UVs into the skin's slot. When no page has room the atlas is defragmented, and a skin that
+ * still doesn't fit keeps using its own texture. The per-skin textures stay registered for
+ * the GUI.
+ */
+@Environment(EnvType.CLIENT)
+public class SkinAtlas {
+    private static final int MIN_SLOT_SIZE = 64;
+
+    private static SkinAtlasAllocator allocator;
+    private static final List<NativeImageBackedTexture> pages = new ArrayList<>();
+    private static final List<Boolean> dirty = new ArrayList<>();
+    private static final Map<Identifier, Slot> slots = new HashMap<>();
+
+    public static final class Slot {
+        private final SkinAtlasAllocator.Allocation allocation;
+        // Size of the skin itself, the allocation can be larger
+        private final int width;
+        private final int height;
+
+        private Slot(SkinAtlasAllocator.Allocation allocation, int width, int height) {
+            this.allocation = allocation;
+            this.width = width;
+            this.height = height;
+        }
+
+        public Identifier getPageTexture() {
+            return pageId(allocation.getPage());
+        }
+
+        public float getMinU() {
+            return allocation.getX() / (float) allocator.getPageSize();
+        }
+
+        public float getMinV() {
+            return allocation.getY() / (float) allocator.getPageSize();
+        }
+
+        public float getScaleU() {
+            return width / (float) allocator.getPageSize();
+        }
+
+        public float getScaleV() {
+            return height / (float) allocator.getPageSize();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ConfigManager.isSkinAtlasEnabled();
+    }
+
+    // Null when the skin isn't in the atlas
+    public static Slot get(Identifier skin) {
+        return skin == null || slots.isEmpty() ? null : slots.get(skin);
+    }
+
+    /**
+     * Copies a freshly uploaded skin into the atlas, replacing its previous copy.
+     */
+    public static void add(Identifier skin, NativeImage image) {
+        if (!isEnabled()) {
+            return;
+        }
+        remove(skin);
+        if (allocator == null) {
+            allocator = new SkinAtlasAllocator(ConfigManager.getSkinAtlasPageSize(), MIN_SLOT_SIZE, ConfigManager.getSkinAtlasMaxPages());
+        }
+        int size = Math.max(image.getWidth(), image.getHeight());
+        if (size > allocator.getPageSize()) {
+            return;
+        }
+        SkinAtlasAllocator.Allocation allocation = allocator.allocate(size);
+        if (allocation == null && allocator.fitsAfterDefragment(size)) {
+            defragment();
+            allocation = allocator.allocate(size);
+        }
+        if (allocation == null) {
+            return;
+        }
+        ensurePages();
+        copy(image, 0, 0, pages.get(allocation.getPage()).getImage(), allocation.getX(), allocation.getY(), image.getWidth(), image.getHeight());
+        dirty.set(allocation.getPage(), true);
+        slots.put(skin, new Slot(allocation, image.getWidth(), image.getHeight()));
+    }
+
+    public static void remove(Identifier skin) {
+        Slot slot = slots.remove(skin);
+        if (slot != null) {
+            allocator.free(slot.allocation);
+        }
+    }
+
+    /**
+     * Uploads the pages that changed since the last call, once per frame.
+     */
+    public static void flush() {
+        for (int i = 0; i < pages.size(); i++) {
+            if (dirty.get(i)) {
+                pages.get(i).upload();
+                dirty.set(i, false);
+            }
+        }
+    }
+
+    private static void ensurePages() {
+        TextureManager textureManager = MinecraftClient.getInstance().getTextureManager();
+        while (pages.size() < allocator.getPageCount()) {
+            int size = allocator.getPageSize();
+            NativeImageBackedTexture page = new NativeImageBackedTexture(new NativeImage(size, size, true));
+            textureManager.registerTexture(pageId(pages.size()), page);
+            pages.add(page);
+            dirty.add(false);
+        }
+    }
+
+    // Rebuilds every page from the old ones, the allocator tells where each skin went
+    private static void defragment() {
+        Map<SkinAtlasAllocator.Allocation, SkinAtlasAllocator.Move> moves = new IdentityHashMap<>();
+        for (SkinAtlasAllocator.Move move : allocator.defragment()) {
+            moves.put(move.allocation(), move);
+        }
+        int size = allocator.getPageSize();
+        List<NativeImage> rebuilt = new ArrayList<>();
+        for (int i = 0; i < allocator.getPageCount(); i++) {
+            rebuilt.add(new NativeImage(size, size, true));
+        }
+        for (Slot slot : slots.values()) {
+            SkinAtlasAllocator.Allocation allocation = slot.allocation;
+            SkinAtlasAllocator.Move move = moves.get(allocation);
+            int fromPage = move != null ? move.fromPage() : allocation.getPage();
+            int fromX = move != null ? move.fromX() : allocation.getX();
+            int fromY = move != null ? move.fromY() : allocation.getY();
+            copy(pages.get(fromPage).getImage(), fromX, fromY, rebuilt.get(allocation.getPage()),
+                    allocation.getX(), allocation.getY(), slot.width, slot.height);
+        }
+
+        // Registering a texture under an existing id closes the old one
+        TextureManager textureManager = MinecraftClient.getInstance().getTextureManager();
+        for (int i = pages.size() - 1; i >= rebuilt.size(); i--) {
+            textureManager.destroyTexture(pageId(i));
+            pages.remove(i);
+            dirty.remove(i);
+        }
+        for (int i = 0; i < rebuilt.size(); i++) {
+            NativeImageBackedTexture page = new NativeImageBackedTexture(rebuilt.get(i));
+            textureManager.registerTexture(pageId(i), page);
+            if (i < pages.size()) {
+                pages.set(i, page);
+                dirty.set(i, false);
+            } else {
+                pages.add(page);
+                dirty.add(false);
+            }
+        }
+    }
+
+    private static void copy(NativeImage from, int fromX, int fromY, NativeImage to, int toX, int toY, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                to.setPixelColor(toX + x, toY + y, from.getPixelColor(fromX + x, fromY + y));
+            }
+        }
+    }
+
+    private static Identifier pageId(int page) {
+        return new Identifier("cnpcaicompanion", "skin_atlas/" + page);
+    }
+
+    public static int getPageCount() {
+        return pages.size();
+    }
+
+    public static int getSkinCount() {
+        return slots.size();
+    }
+}
@@ -0,0 +1,233 @@
+package com.goodbird.player2npc.client.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Packs square images into fixed size atlas pages with a buddy allocator.
+ * <p>
+ * Every request is rounded up to a power of two multiple of the minimum cell size. A free
+ * block is split into four quadrants until it has the requested size, and freed blocks merge
+ * back with their three siblings. Free blocks are taken top-left first on the lowest page,
+ * so {@link #defragment} (re-placing everything largest first) packs all live allocations
+ * into as few pages as possible. Only does the bookkeeping, copying pixels is up to the caller.
+ */
+public final class SkinAtlasAllocator {
+    private final int pageSize;
+    private final int minSize;
+    private final int maxPages;
+    private final int maxOrder;
+    private final int cellsPerRow;
+
+    private final List<Page> pages = new ArrayList<>();
+    private final Set<Allocation> live = new LinkedHashSet<>();
+    private long usedArea = 0;
+
+    public static final class Allocation {
+        private final int order;
+        private final int size;
+        private int page;
+        private int x;
+        private int y;
+
+        private Allocation(int order, int size) {
+            this.order = order;
+            this.size = size;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        // Side of the allocated block, at least the requested size
+        public int getSize() {
+            return size;
+        }
+    }
+
+    // An allocation defragment() moved, with its previous position
+    public record Move(Allocation allocation, int fromPage, int fromX, int fromY) {
+    }
+
+    private final class Page {
+        // Free block positions per order, packed as cell index
+        final List<TreeSet<Integer>> free = new ArrayList<>();
+
+        Page() {
+            for (int order = 0; order <= maxOrder; order++) {
+                free.add(new TreeSet<>());
+            }
+            free.get(maxOrder).add(0);
+        }
+    }
+
+    public SkinAtlasAllocator(int pageSize, int minSize, int maxPages) {
+        if (minSize <= 0 || Integer.bitCount(minSize) != 1 || Integer.bitCount(pageSize) != 1 || pageSize < minSize) {
+            throw new IllegalArgumentException("Page size and minimum size must be powers of two, got " + pageSize + " and " + minSize);
+        }
+        this.pageSize = pageSize;
+        this.minSize = minSize;
+        this.maxPages = maxPages;
+        this.maxOrder = Integer.numberOfTrailingZeros(pageSize / minSize);
+        this.cellsPerRow = pageSize / minSize;
+    }
+
+    /**
+     * Allocates a block of at least size x size, or returns null when no page has room and no
+     * new page may be added. A full allocator may still fit it after {@link #defragment}.
+     */
+    public Allocation allocate(int size) {
+        if (size <= 0 || size > pageSize) {
+            throw new IllegalArgumentException("Can't allocate " + size + " in pages of " + pageSize);
+        }
+        int order = orderOf(size);
+        Allocation allocation = new Allocation(order, minSize << order);
+        if (!place(allocation)) {
+            return null;
+        }
+        live.add(allocation);
+        usedArea += (long) allocation.size * allocation.size;
+        return allocation;
+    }
+
+    public void free(Allocation allocation) {
+        if (!live.remove(allocation)) {
+            return;
+        }
+        usedArea -= (long) allocation.size * allocation.size;
+        release(pages.get(allocation.page), allocation.order, allocation.x / minSize, allocation.y / minSize);
+    }
+
+    // Whether the free area would fit the size once defragmented
+    public boolean fitsAfterDefragment(int size) {
+        long block = (long) (minSize << orderOf(size));
+        return usedArea + block * block <= (long) maxPages * pageSize * pageSize;
+    }
+
+    /**
+     * Re-places every live allocation, largest first, into the lowest pages. Empty pages at the
+     * end are dropped. Returns the allocations that moved.
+     */
+    public List<Move> defragment() {
+        List<Allocation> sorted = new ArrayList<>(live);
+        sorted.sort(Comparator.comparingInt((Allocation allocation) -> -allocation.size)
+                .thenComparingInt(allocation -> allocation.page)
+                .thenComparingInt(allocation -> allocation.y)
+                .thenComparingInt(allocation -> allocation.x));
+        pages.clear();
+        List<Move> moves = new ArrayList<>();
+        for (Allocation allocation : sorted) {
+            int fromPage = allocation.page;
+            int fromX = allocation.x;
+            int fromY = allocation.y;
+            // Always fits, same sized powers of two placed largest first leave no holes
+            place(allocation);
+            if (allocation.page != fromPage || allocation.x != fromX || allocation.y != fromY) {
+                moves.add(new Move(allocation, fromPage, fromX, fromY));
+            }
+        }
+        return moves;
+    }
+
+    private boolean place(Allocation allocation) {
+        for (int index = 0; index < pages.size(); index++) {
+            if (placeIn(pages.get(index), index, allocation)) {
+                return true;
+            }
+        }
+        if (pages.size() >= maxPages) {
+            return false;
+        }
+        pages.add(new Page());
+        return placeIn(pages.get(pages.size() - 1), pages.size() - 1, allocation);
+    }
+
+    private boolean placeIn(Page page, int index, Allocation allocation) {
+        for (int order = allocation.order; order <= maxOrder; order++) {
+            TreeSet<Integer> free = page.free.get(order);
+            if (free.isEmpty()) {
+                continue;
+            }
+            int cell = free.pollFirst();
+            int cx = cell % cellsPerRow;
+            int cy = cell / cellsPerRow;
+            // Split down, keeping the top-left quadrant every time
+            while (order > allocation.order) {
+                order--;
+                int half = 1 << order;
+                TreeSet<Integer> lower = page.free.get(order);
+                lower.add(pack(cx + half, cy));
+                lower.add(pack(cx, cy + half));
+                lower.add(pack(cx + half, cy + half));
+            }
+            allocation.page = index;
+            allocation.x = cx * minSize;
+            allocation.y = cy * minSize;
+            return true;
+        }
+        return false;
+    }
+
+    private void release(Page page, int order, int cx, int cy) {
+        while (order < maxOrder) {
+            int parent = 1 << (order + 1);
+            int px = cx - cx % parent;
+            int py = cy - cy % parent;
+            int half = 1 << order;
+            TreeSet<Integer> free = page.free.get(order);
+            int self = pack(cx, cy);
+            boolean merge = true;
+            for (int i = 0; i < 4 && merge; i++) {
+                int sibling = pack(px + (i & 1) * half, py + (i >> 1) * half);
+                merge = sibling == self || free.contains(sibling);
+            }
+            if (!merge) {
+                break;
+            }
+            for (int i = 0; i < 4; i++) {
+                free.remove(pack(px + (i & 1) * half, py + (i >> 1) * half));
+            }
+            cx = px;
+            cy = py;
+            order++;
+        }
+        page.free.get(order).add(pack(cx, cy));
+    }
+
+    private int orderOf(int size) {
+        int cells = (size + minSize - 1) / minSize;
+        return 32 - Integer.numberOfLeadingZeros(cells - 1);
+    }
+
+    private int pack(int cx, int cy) {
+        return cy * cellsPerRow + cx;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public int getLiveCount() {
+        return live.size();
+    }
+
+    public long getUsedArea() {
+        return usedArea;
+    }
+}
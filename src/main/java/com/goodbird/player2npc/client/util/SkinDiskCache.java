@@ -0,0 +1,372 @@
+package com.goodbird.player2npc.client.util;
+
+import com.goodbird.player2npc.config.ConfigManager;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.mojang.blaze3d.texture.NativeImage;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * On-disk skin cache keyed by the SHA-256 of the skin URL.
+ * <p>
+ * Every entry is the skin after {@link ImageDownloadAlt#parseUserSkin}, so loading it again
+ * skips the legacy format conversion. A JSON manifest keeps the ETag and Last-Modified of each
+ * entry so it can be revalidated with a conditional request once it's older than
+ * SKIN_CACHE_REVALIDATE_HOURS. The total size is capped, least recently used entries are
+ * deleted first.
+ * <p>
+ * Changes only mark the manifest dirty. It's written by {@link #saveIfDue} at most every
+ * SAVE_INTERVAL_MILLIS and once more when the client stops.
+ */
+@Environment(EnvType.CLIENT)
+public final class SkinDiskCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Gson GSON = new Gson();
+
+    private static final String DIRECTORY = "player2npc-skins";
+    private static final String MANIFEST = "manifest.json";
+    private static final int VERSION = 1;
+    private static final long SAVE_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // Names of the files the old cache wrote next to ours: (url + fixSkin).hashCode()
+    private static final Pattern LEGACY_NAME = Pattern.compile("-?\\d{1,10}");
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private static SkinDiskCache instance;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long revalidateMillis;
+
+    // Access ordered, eldest first
+    private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long _totalBytes = 0;
+    private boolean _dirty = false;
+    private long _lastSave = 0;
+    // Serializes manifest writes, which happen outside the cache lock
+    private final Object _saveLock = new Object();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public record Validators(String etag, String lastModified) {
+    }
+
+    private static final class Entry {
+        String key;
+        String url;
+        String etag;
+        String lastModified;
+        long size;
+        long validatedAt;
+        long lastAccess;
+    }
+
+    private static final class Manifest {
+        int version;
+        List<Entry> entries;
+    }
+
+    public SkinDiskCache(Path dir, long maxBytes, long revalidateMillis) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.revalidateMillis = revalidateMillis;
+        load();
+    }
+
+    public static synchronized SkinDiskCache get() {
+        if (instance == null) {
+            instance = new SkinDiskCache(ResourceDownloader.getCacheDir().toPath().resolve(DIRECTORY),
+                    ConfigManager.getSkinCacheMaxMb() * 1024L * 1024L,
+                    TimeUnit.HOURS.toMillis(ConfigManager.getSkinCacheRevalidateHours()));
+            deleteLegacyFiles(ResourceDownloader.getCacheDir().toPath());
+        }
+        return instance;
+    }
+
+    public static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the cached image of the key and marks it as used, or null if there is none.
+     */
+    public synchronized Path getImage(String key) {
+        Entry entry = _entries.get(key);
+        Path file = imageFile(key);
+        if (entry == null || !Files.isRegularFile(file)) {
+            if (entry != null) {
+                remove(entry);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.lastAccess = System.currentTimeMillis();
+        _dirty = true;
+        return file;
+    }
+
+    public synchronized boolean needsRevalidation(String key) {
+        Entry entry = _entries.get(key);
+        return entry != null && System.currentTimeMillis() - entry.validatedAt > revalidateMillis;
+    }
+
+    public synchronized Validators getValidators(String key) {
+        Entry entry = _entries.get(key);
+        return entry == null ? new Validators(null, null) : new Validators(entry.etag, entry.lastModified);
+    }
+
+    // Where the downloader writes the raw image before it's converted
+    public Path getDownloadFile(String key) {
+        return dir.resolve(key + ".download");
+    }
+
+    /**
+     * Stores an already converted skin. Doesn't close the image.
+     */
+    public void store(String key, String url, NativeImage image, String etag, String lastModified) throws IOException {
+        Path file = imageFile(key);
+        Path partial = dir.resolve(key + ".png.part");
+        Files.createDirectories(dir);
+        ImageIO.write(toBufferedImage(image), "png", partial.toFile());
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long size = Files.size(file);
+
+        synchronized (this) {
+            Entry entry = _entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entry.key = key;
+                _entries.put(key, entry);
+            } else {
+                _totalBytes -= entry.size;
+            }
+            long now = System.currentTimeMillis();
+            entry.url = url;
+            entry.etag = etag;
+            entry.lastModified = lastModified;
+            entry.size = size;
+            entry.validatedAt = now;
+            entry.lastAccess = now;
+            _totalBytes += size;
+            evict();
+            _dirty = true;
+        }
+    }
+
+    // The server answered 304, the entry is fresh again
+    public synchronized void markValidated(String key) {
+        Entry entry = _entries.get(key);
+        if (entry != null) {
+            entry.validatedAt = System.currentTimeMillis();
+            _dirty = true;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = _entries.values().iterator();
+        // Never evicts the entry that was just stored
+        while (_totalBytes > maxBytes && _entries.size() > 1 && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            delete(eldest);
+            evictions++;
+        }
+    }
+
+    private void remove(Entry entry) {
+        _entries.remove(entry.key);
+        delete(entry);
+        _dirty = true;
+    }
+
+    private void delete(Entry entry) {
+        _totalBytes -= entry.size;
+        try {
+            Files.deleteIfExists(imageFile(entry.key));
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't delete cached skin {}", entry.key, e);
+        }
+    }
+
+    private Path imageFile(String key) {
+        return dir.resolve(key + ".png");
+    }
+
+    private static BufferedImage toBufferedImage(NativeImage image) {
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                // NativeImage pixels are ABGR
+                int abgr = image.getPixelColor(x, y);
+                result.setRGB(x, y, (abgr & 0xFF00FF00) | (abgr & 0xFF) << 16 | (abgr >> 16 & 0xFF));
+            }
+        }
+        return result;
+    }
+
+    private synchronized void load() {
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.isRegularFile(manifest)) {
+            try (Reader reader = Files.newBufferedReader(manifest)) {
+                Manifest read = GSON.fromJson(reader, Manifest.class);
+                if (read != null && read.version == VERSION && read.entries != null) {
+                    read.entries.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+                    for (Entry entry : read.entries) {
+                        if (entry.key != null && Files.isRegularFile(imageFile(entry.key))) {
+                            _entries.put(entry.key, entry);
+                            _totalBytes += entry.size;
+                        }
+                    }
+                }
+            } catch (IOException | JsonParseException e) {
+                LOGGER.warn("Couldn't read the skin cache manifest, starting empty", e);
+            }
+        }
+        deleteOrphans();
+        evict();
+    }
+
+    // Removes images missing from the manifest and leftovers of interrupted writes
+    private void deleteOrphans() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.equals(MANIFEST)) {
+                    continue;
+                }
+                if (!name.endsWith(".png") || !_entries.containsKey(name.substring(0, name.length() - 4))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't clean up the skin cache", e);
+        }
+    }
+
+    // Removes the skins the old cache stored under the hash code of their URL, it never cleaned them up
+    private static void deleteLegacyFiles(Path legacyDir) {
+        if (!Files.isDirectory(legacyDir)) {
+            return;
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(legacyDir,
+                file -> LEGACY_NAME.matcher(file.getFileName().toString()).matches() && Files.isRegularFile(file))) {
+            for (Path file : files) {
+                if (isPng(file)) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't clean up the old skin cache", e);
+        }
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} skins left by the old skin cache", deleted);
+        }
+    }
+
+    private static boolean isPng(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(PNG_SIGNATURE.length), PNG_SIGNATURE);
+        }
+    }
+
+    /**
+     * Saves the manifest if it changed and the last save is older than SAVE_INTERVAL_MILLIS.
+     */
+    public void saveIfDue() {
+        synchronized (this) {
+            if (!_dirty || System.currentTimeMillis() - _lastSave < SAVE_INTERVAL_MILLIS) {
+                return;
+            }
+        }
+        save();
+    }
+
+    public void save() {
+        synchronized (_saveLock) {
+            String json;
+            synchronized (this) {
+                if (!_dirty) {
+                    return;
+                }
+                Manifest manifest = new Manifest();
+                manifest.version = VERSION;
+                manifest.entries = new ArrayList<>(_entries.values());
+                json = GSON.toJson(manifest);
+                _dirty = false;
+                _lastSave = System.currentTimeMillis();
+            }
+            Path file = dir.resolve(MANIFEST);
+            Path partial = dir.resolve(MANIFEST + ".part");
+            try {
+                Files.createDirectories(dir);
+                try (Writer writer = Files.newBufferedWriter(partial)) {
+                    writer.write(json);
+                }
+                Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOGGER.error("Couldn't save the skin cache manifest", e);
+                synchronized (this) {
+                    _dirty = true;
+                }
+            }
+        }
+    }
+
+    public synchronized int getEntryCount() {
+        return _entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return _totalBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
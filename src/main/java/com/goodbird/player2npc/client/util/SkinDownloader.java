@@ -0,0 +1,418 @@
+package com.goodbird.player2npc.client.util;
+
+import com.goodbird.player2npc.config.ConfigManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads skin images over a single shared {@link HttpClient} (keep-alive, HTTP/2 when the
+ * server supports it).
+ * <p>
+ * At most {@code maxConcurrent} downloads run at the same time, the rest wait in a priority
+ * queue where {@link Priority#VISIBLE} requests go before {@link Priority#BACKGROUND} ones.
+ * Requests for the same URL, target file and validators as one that is already queued or
+ * downloading share its future, and a visible request moves a queued background one up.
+ * Bodies are capped at 2 MB whether or not the server announces a Content-Length.
+ * Connection errors, 5xx and 429 responses are retried with exponential backoff.
+ * Conditional requests (ETag / Last-Modified) are supported for revalidating cached skins.
+ * <p>
+ * Doesn't depend on the game, so it can be pointed at a local HTTP server.
+ */
+public final class SkinDownloader {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // Same limit ImageDownloadAlt used to apply
+    private static final long MAX_SIZE = 2_000_000L;
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 5.1; rv:19.0) Gecko/20100101 Firefox/19.0";
+
+    public enum Priority {
+        VISIBLE,
+        BACKGROUND
+    }
+
+    public enum Status {
+        DOWNLOADED,
+        NOT_MODIFIED,
+        MISSING
+    }
+
+    // Validators are those of the new response when DOWNLOADED
+    public record Result(Status status, String etag, String lastModified) {
+    }
+
+    private static SkinDownloader instance;
+
+    private final HttpClient client;
+    private final int maxConcurrent;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Duration requestTimeout;
+
+    // Guarded by this
+    private final Map<DownloadKey, Download> _inFlight = new HashMap<>();
+    private final PriorityQueue<Download> _queue = new PriorityQueue<>(
+            Comparator.<Download, Priority>comparing(download -> download.priority).thenComparingLong(download -> download.sequence));
+    private int _running = 0;
+    private long _sequence = 0;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    // Requests only share a download when they'd send the same request and write the same file
+    private record DownloadKey(String url, Path target, String etag, String lastModified) {
+    }
+
+    // Thrown into the body subscriber once a response goes over MAX_SIZE
+    private static final class TooLargeException extends IOException {
+        TooLargeException() {
+            super("Skin is larger than " + MAX_SIZE + " bytes");
+        }
+    }
+
+    private static final class Download {
+        final DownloadKey key;
+        final String url;
+        final Path target;
+        final String etag;
+        final String lastModified;
+        final CompletableFuture<Result> future = new CompletableFuture<>();
+        Priority priority;
+        long sequence;
+        int attempt = 0;
+        boolean queued = true;
+
+        Download(DownloadKey key, String url, Path target, Priority priority, String etag, String lastModified) {
+            this.key = key;
+            this.url = url;
+            this.target = target;
+            this.priority = priority;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public SkinDownloader(HttpClient client, int maxConcurrent, int maxAttempts, long backoffMillis, Duration requestTimeout) {
+        this.client = client;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.requestTimeout = requestTimeout;
+    }
+
+    public static synchronized SkinDownloader get() {
+        if (instance == null) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofMillis(ConfigManager.getSkinDownloadTimeoutMs()))
+                    .build();
+            instance = new SkinDownloader(client, ConfigManager.getSkinDownloadConcurrency(),
+                    ConfigManager.getSkinDownloadAttempts(), ConfigManager.getSkinDownloadBackoffMs(),
+                    Duration.ofMillis(ConfigManager.getSkinDownloadTimeoutMs()));
+        }
+        return instance;
+    }
+
+    public CompletableFuture<Result> download(String url, Path target, Priority priority) {
+        return download(url, target, priority, null, null);
+    }
+
+    /**
+     * Downloads the image to the target file, conditionally when validators are given. The
+     * future completes once the file was written, the server answered 304 or has no usable PNG
+     * for the URL, and exceptionally once every attempt failed.
+     */
+    public CompletableFuture<Result> download(String url, Path target, Priority priority, String etag, String lastModified) {
+        requested.incrementAndGet();
+        DownloadKey key = new DownloadKey(url, target, etag, lastModified);
+        synchronized (this) {
+            Download download = _inFlight.get(key);
+            if (download != null) {
+                merged.incrementAndGet();
+                raise(download, priority);
+                return download.future;
+            }
+            download = new Download(key, url, target, priority, etag, lastModified);
+            download.sequence = _sequence++;
+            _inFlight.put(key, download);
+            _queue.add(download);
+            pump();
+            return download.future;
+        }
+    }
+
+    /**
+     * Moves queued downloads of the URL up to the given priority, does nothing if there are none.
+     */
+    public synchronized void prioritize(String url, Priority priority) {
+        for (Download download : _inFlight.values()) {
+            if (download.url.equals(url)) {
+                raise(download, priority);
+            }
+        }
+    }
+
+    private void raise(Download download, Priority priority) {
+        if (priority.ordinal() >= download.priority.ordinal()) {
+            return;
+        }
+        if (download.queued) {
+            _queue.remove(download);
+            download.priority = priority;
+            _queue.add(download);
+        } else {
+            download.priority = priority;
+        }
+    }
+
+    // Holds the lock
+    private void pump() {
+        while (_running < maxConcurrent && !_queue.isEmpty()) {
+            Download download = _queue.poll();
+            download.queued = false;
+            _running++;
+            start(download);
+        }
+    }
+
+    private void start(Download download) {
+        HttpRequest request;
+        Path partial = download.target.resolveSibling(download.target.getFileName() + ".part");
+        try {
+            Files.createDirectories(download.target.getParent());
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(download.url))
+                    .timeout(requestTimeout)
+                    .header("User-Agent", USER_AGENT)
+                    .GET();
+            if (download.etag != null) {
+                builder.header("If-None-Match", download.etag);
+            }
+            if (download.lastModified != null) {
+                builder.header("If-Modified-Since", download.lastModified);
+            }
+            request = builder.build();
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.error("Couldn't download skin {}", download.url, e);
+            failed.incrementAndGet();
+            CompletableFuture.runAsync(() -> finish(download, null, e));
+            return;
+        }
+        client.sendAsync(request, info -> {
+                    long size = info.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                    String type = info.headers().firstValue("Content-Type").orElse("");
+                    if (info.statusCode() / 100 == 2 && type.startsWith("image/png") && size <= MAX_SIZE) {
+                        // Content-Length is missing on chunked responses, the limit has to hold
+                        // while reading
+                        return new LimitedBodySubscriber(HttpResponse.BodySubscribers.ofFile(partial));
+                    }
+                    return HttpResponse.BodySubscribers.replacing((Path) null);
+                })
+                .whenComplete((response, error) -> onResponse(download, partial, response, error));
+    }
+
+    private void onResponse(Download download, Path partial, HttpResponse<Path> response, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof TooLargeException) {
+            LOGGER.warn("Skin {} is too large, skipping it", download.url);
+            deletePartial(partial);
+            notFound.incrementAndGet();
+            finish(download, new Result(Status.MISSING, null, null), null);
+            return;
+        }
+        if (error == null && response.body() != null) {
+            try {
+                Files.move(partial, download.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                succeeded.incrementAndGet();
+                finish(download, new Result(Status.DOWNLOADED,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null)), null);
+            } catch (IOException e) {
+                retryOrFail(download, e);
+            }
+            return;
+        }
+        if (error == null) {
+            int status = response.statusCode();
+            if (status == 304) {
+                notModified.incrementAndGet();
+                finish(download, new Result(Status.NOT_MODIFIED, download.etag, download.lastModified), null);
+                return;
+            }
+            if (status / 100 != 5 && status != 429) {
+                LOGGER.debug("No skin at {} (status {})", download.url, status);
+                notFound.incrementAndGet();
+                finish(download, new Result(Status.MISSING, null, null), null);
+                return;
+            }
+            error = new IOException("HTTP " + status);
+        }
+        retryOrFail(download, error);
+    }
+
+    private void retryOrFail(Download download, Throwable error) {
+        if (download.attempt + 1 >= maxAttempts) {
+            LOGGER.error("Couldn't download skin {} after {} attempts", download.url, maxAttempts, error);
+            failed.incrementAndGet();
+            finish(download, null, error);
+            return;
+        }
+        download.attempt++;
+        retries.incrementAndGet();
+        long delay = (backoffMillis << (download.attempt - 1)) + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+        synchronized (this) {
+            _running--;
+            pump();
+        }
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            synchronized (this) {
+                download.queued = true;
+                _queue.add(download);
+                pump();
+            }
+        });
+    }
+
+    private void finish(Download download, Result result, Throwable error) {
+        synchronized (this) {
+            _running--;
+            _inFlight.remove(download.key);
+            pump();
+        }
+        if (error != null) {
+            download.future.completeExceptionally(error);
+        } else {
+            download.future.complete(result);
+        }
+    }
+
+    private static void deletePartial(Path partial) {
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            LOGGER.debug("Couldn't delete {}", partial, e);
+        }
+    }
+
+    /**
+     * Passes the body on to another subscriber and cancels the response once more than
+     * MAX_SIZE bytes arrived.
+     */
+    private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<Path> {
+        private final HttpResponse.BodySubscriber<Path> delegate;
+        private Flow.Subscription subscription;
+        private long received = 0;
+        private boolean aborted = false;
+
+        LimitedBodySubscriber(HttpResponse.BodySubscriber<Path> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (aborted) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+            }
+            if (received > MAX_SIZE) {
+                aborted = true;
+                subscription.cancel();
+                delegate.onError(new TooLargeException());
+                return;
+            }
+            delegate.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!aborted) {
+                delegate.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!aborted) {
+                delegate.onComplete();
+            }
+        }
+    }
+
+    public synchronized int getRunning() {
+        return _running;
+    }
+
+    public synchronized int getQueued() {
+        return _queue.size();
+    }
+
+    public long getRequested() {
+        return requested.get();
+    }
+
+    public long getMerged() {
+        return merged.get();
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public long getNotFound() {
+        return notFound.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+}
@@ -1,33 +1,16 @@
 package com.goodbird.player2npc.client.util;
 
 import com.mojang.blaze3d.systems.RenderSystem;
-import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.util.Identifier;
 
-import java.io.File;
-
 public class SkinManager {
 
     private static final Identifier STEVE_SKIN_ID = new Identifier("textures/entity/player/wide/steve.png");
 
     public static Identifier getSkinIdentifier(String skinUrl) {
-        if (skinUrl == null || skinUrl.isEmpty()) {
-            return STEVE_SKIN_ID;
-        }
-
-        Identifier location = ResourceDownloader.getUrlResourceLocation(skinUrl, true);
-
-        if (MinecraftClient.getInstance().getTextureManager().getOrDefault(location, null) != null) {
-            return location;
-        }
-
-        File cacheFile = ResourceDownloader.getUrlFile(skinUrl, true);
-        ImageDownloadAlt downloader = new ImageDownloadAlt(cacheFile, skinUrl, location, STEVE_SKIN_ID, true, () -> {
-        });
-        ResourceDownloader.load(downloader);
-
-        return STEVE_SKIN_ID;
+        Identifier location = SkinPipeline.getTexture(skinUrl);
+        return location != null ? location : STEVE_SKIN_ID;
     }
 
     public static void renderSkinHead(GuiGraphics graphics, int x, int y, int size, Identifier skinIdentifier) {
@@ -0,0 +1,326 @@
+package com.goodbird.player2npc.client.util;
+
+import com.goodbird.player2npc.config.ConfigManager;
+import com.mojang.blaze3d.texture.NativeImage;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.util.Identifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads companion skins without blocking the render thread.
+ * <p>
+ * Disk cache lookups, PNG decode and the 64x32 to 64x64 conversion run on worker threads,
+ * downloads go through {@link SkinDownloader} and converted skins are kept in
+ * {@link SkinDiskCache}. Decoded images wait in a queue and the render thread uploads them
+ * at the start of each frame, stopping once the frame's upload budget is spent. The resulting
+ * {@link Identifier} is cached per skin URL, so every companion and card with the same
+ * character shares it.
+ * <p>
+ * Textures are reference counted. Companions hold a reference while they are loaded, the
+ * character screens while they are open. A texture nobody references is destroyed after a
+ * grace period, or earlier, least recently used first, once more than
+ * SKIN_TEXTURE_MAX_RESIDENT are resident. Eviction only drops the GPU copy, the skin is read
+ * back from the disk cache the next time it's needed.
+ * <p>
+ * A skin that failed to load is loaded again by {@link #getTexture} once its retry delay is
+ * over, also while it's referenced. The delay doubles with each failure in a row.
+ */
+@Environment(EnvType.CLIENT)
+public class SkinPipeline {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private enum State {
+        LOADING,
+        READY,
+        FAILED
+    }
+
+    private static class Entry {
+        final String url;
+        final String key;
+        final Identifier location;
+        volatile State state = State.LOADING;
+        volatile boolean background;
+        // Written before state is set to FAILED, read after seeing it
+        int failures = 0;
+        long retryAt = 0;
+
+        // Render thread only
+        int refs = 0;
+        long releasedAt = System.currentTimeMillis();
+        long lastUsed = System.currentTimeMillis();
+        long bytes = 0;
+
+        Entry(String url) {
+            this.url = url;
+            this.key = SkinDiskCache.key(url);
+            this.location = ResourceDownloader.getUrlResourceLocation(url, true);
+        }
+    }
+
+    private record Decoded(Entry entry, NativeImage image) {
+    }
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<Decoded> READY = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    private static final int EVICTION_INTERVAL = 20;
+    private static final long RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(ConfigManager.getSkinWorkerThreads(), runnable -> {
+        Thread thread = new Thread(runnable, "Player2NPC-Skin-" + THREAD_INDEX.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Render thread only
+    private static int residentCount = 0;
+    private static long residentBytes = 0;
+    private static int ticksUntilEviction = 0;
+
+    /**
+     * Returns the texture of the skin if it's uploaded, null otherwise. The first call for a URL
+     * starts loading it. Callers are rendering the skin, so its download goes first.
+     */
+    public static Identifier getTexture(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        Entry entry = ENTRIES.get(url);
+        if (entry == null) {
+            entry = load(url, SkinDownloader.Priority.VISIBLE);
+        } else if (entry.background && entry.state == State.LOADING) {
+            entry.background = false;
+            SkinDownloader.get().prioritize(url, SkinDownloader.Priority.VISIBLE);
+        } else if (entry.state == State.FAILED && System.currentTimeMillis() >= entry.retryAt) {
+            retry(entry);
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.state == State.READY ? entry.location : null;
+    }
+
+    /**
+     * Starts loading a skin that isn't on screen yet, behind every visible one.
+     */
+    public static void prefetch(String url) {
+        if (url != null && !url.isEmpty() && !ENTRIES.containsKey(url)) {
+            load(url, SkinDownloader.Priority.BACKGROUND);
+        }
+    }
+
+    /**
+     * Render thread: keeps the skin's texture resident until the matching {@link #release}.
+     */
+    public static void acquire(String url) {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        Entry entry = ENTRIES.get(url);
+        if (entry == null) {
+            entry = load(url, SkinDownloader.Priority.VISIBLE);
+        }
+        entry.refs++;
+    }
+
+    public static void release(String url) {
+        Entry entry = url == null ? null : ENTRIES.get(url);
+        if (entry != null && entry.refs > 0 && --entry.refs == 0) {
+            entry.releasedAt = System.currentTimeMillis();
+        }
+    }
+
+    private static Entry load(String url, SkinDownloader.Priority priority) {
+        return ENTRIES.computeIfAbsent(url, key -> {
+            Entry created = new Entry(key);
+            created.background = priority == SkinDownloader.Priority.BACKGROUND;
+            WORKERS.execute(() -> resolve(key, created, priority));
+            return created;
+        });
+    }
+
+    // Render thread, the entry keeps its references
+    private static void retry(Entry entry) {
+        entry.state = State.LOADING;
+        entry.background = false;
+        WORKERS.execute(() -> resolve(entry.url, entry, SkinDownloader.Priority.VISIBLE));
+    }
+
+    // Worker thread
+    private static void resolve(String url, Entry entry, SkinDownloader.Priority priority) {
+        SkinDiskCache cache = SkinDiskCache.get();
+        Path cached = cache.getImage(entry.key);
+        if (cached == null) {
+            fetch(url, entry, priority, new SkinDiskCache.Validators(null, null), false);
+            return;
+        }
+        try {
+            // Already converted when it was stored
+            READY.add(new Decoded(entry, read(cached)));
+        } catch (Exception e) {
+            LOGGER.error("Couldn't load cached skin {}", url, e);
+            fetch(url, entry, priority, new SkinDiskCache.Validators(null, null), false);
+            return;
+        }
+        // Stale entries are shown right away and refreshed in the background
+        if (cache.needsRevalidation(entry.key)) {
+            fetch(url, entry, SkinDownloader.Priority.BACKGROUND, cache.getValidators(entry.key), true);
+        }
+    }
+
+    private static void fetch(String url, Entry entry, SkinDownloader.Priority priority,
+                              SkinDiskCache.Validators validators, boolean revalidating) {
+        SkinDiskCache cache = SkinDiskCache.get();
+        Path download = cache.getDownloadFile(entry.key);
+        SkinDownloader.get().download(url, download, priority, validators.etag(), validators.lastModified())
+                .whenCompleteAsync((result, error) -> {
+                    if (error == null && result.status() == SkinDownloader.Status.NOT_MODIFIED) {
+                        cache.markValidated(entry.key);
+                    } else if (error == null && result.status() == SkinDownloader.Status.DOWNLOADED) {
+                        store(url, entry, download, result, revalidating);
+                    } else if (!revalidating) {
+                        fail(entry);
+                    }
+                    cache.saveIfDue();
+                }, WORKERS);
+    }
+
+    // Worker thread
+    private static void store(String url, Entry entry, Path download, SkinDownloader.Result result, boolean revalidating) {
+        try {
+            NativeImage image = ImageDownloadAlt.parseUserSkin(read(download), true);
+            SkinDiskCache.get().store(entry.key, url, image, result.etag(), result.lastModified());
+            // Replaces the stale texture when revalidating, the texture manager closes the old one
+            READY.add(new Decoded(entry, image));
+        } catch (Exception e) {
+            LOGGER.error("Couldn't load skin {}", url, e);
+            if (!revalidating) {
+                fail(entry);
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(download);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Worker thread
+    private static void fail(Entry entry) {
+        entry.failures++;
+        entry.retryAt = System.currentTimeMillis()
+                + Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << Math.min(entry.failures - 1, 10));
+        entry.state = State.FAILED;
+    }
+
+    private static NativeImage read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return NativeImage.read(in);
+        }
+    }
+
+    /**
+     * Render thread, start of every frame: uploads decoded skins within the frame budget.
+     */
+    public static void uploadPending() {
+        if (READY.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Decoded decoded;
+        while ((decoded = READY.poll()) != null) {
+            Entry entry = decoded.entry();
+            if (ENTRIES.get(entry.url) != entry) {
+                // Evicted while it was being decoded
+                decoded.image().close();
+                continue;
+            }
+            MinecraftClient.getInstance().getTextureManager()
+                    .registerTexture(entry.location, new NativeImageBackedTexture(decoded.image()));
+            SkinAtlas.add(entry.location, decoded.image());
+            long bytes = (long) decoded.image().getWidth() * decoded.image().getHeight() * 4;
+            if (entry.state != State.READY) {
+                residentCount++;
+                if (entry.refs == 0) {
+                    entry.releasedAt = System.currentTimeMillis();
+                }
+            }
+            residentBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+            entry.state = State.READY;
+            // At least one upload per frame, then stop once the budget is spent
+            if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(ConfigManager.getSkinUploadBudgetMs())) {
+                break;
+            }
+        }
+        SkinAtlas.flush();
+    }
+
+    /**
+     * Client tick: destroys unreferenced textures once their grace period is over, and the least
+     * recently used unreferenced ones while more than the cap are resident.
+     */
+    public static void evictUnused() {
+        if (--ticksUntilEviction > 0) {
+            return;
+        }
+        ticksUntilEviction = EVICTION_INTERVAL;
+        long now = System.currentTimeMillis();
+        long grace = TimeUnit.SECONDS.toMillis(ConfigManager.getSkinTextureGraceSeconds());
+        List<Entry> unreferenced = new ArrayList<>();
+        for (Entry entry : ENTRIES.values()) {
+            if (entry.refs > 0 || entry.state == State.LOADING) {
+                continue;
+            }
+            if (now - entry.releasedAt > grace) {
+                // Failed skins are dropped too, referenced ones are retried from getTexture
+                evict(entry);
+            } else if (entry.state == State.READY) {
+                unreferenced.add(entry);
+            }
+        }
+        int excess = residentCount - ConfigManager.getSkinTextureMaxResident();
+        if (excess > 0) {
+            unreferenced.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+            for (int i = 0; i < excess && i < unreferenced.size(); i++) {
+                evict(unreferenced.get(i));
+            }
+        }
+    }
+
+    private static void evict(Entry entry) {
+        ENTRIES.remove(entry.url, entry);
+        if (entry.state == State.READY) {
+            SkinAtlas.remove(entry.location);
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(entry.location);
+            residentCount--;
+            residentBytes -= entry.bytes;
+        }
+    }
+
+    public static int getResidentCount() {
+        return residentCount;
+    }
+
+    public static long getResidentBytes() {
+        return residentBytes;
+    }
+}
@@ -0,0 +1,41 @@
+package com.goodbird.player2npc.command;
+
+import com.goodbird.player2npc.Player2NPC;
+import com.goodbird.player2npc.client.util.SkinDiskCache;
+import com.goodbird.player2npc.client.util.SkinPipeline;
+import com.goodbird.player2npc.config.ConfigManager;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.text.Text;
+
+/**
+ * Client side diagnostics command: /player2npc_client ...
+ */
+@Environment(EnvType.CLIENT)
+public class Player2NPCClientCommand {
+
+    public static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
+        dispatcher.register(ClientCommandManager.literal(Player2NPC.MOD_ID + "_client")
+                .then(ClientCommandManager.literal("skins")
+                        .executes(Player2NPCClientCommand::printSkins)));
+    }
+
+    private static int printSkins(CommandContext<FabricClientCommandSource> context) {
+        FabricClientCommandSource source = context.getSource();
+        String resident = String.format("Skin textures: %d resident (max %d), %.1f KiB",
+                SkinPipeline.getResidentCount(), ConfigManager.getSkinTextureMaxResident(),
+                SkinPipeline.getResidentBytes() / 1024.0);
+        source.sendFeedback(Text.literal(resident));
+
+        SkinDiskCache cache = SkinDiskCache.get();
+        String disk = String.format("Skin disk cache: %d entries, %.1f KiB, %d hits, %d misses, %d evictions",
+                cache.getEntryCount(), cache.getTotalBytes() / 1024.0, cache.getHits(), cache.getMisses(),
+                cache.getEvictions());
+        source.sendFeedback(Text.literal(disk));
+        return SkinPipeline.getResidentCount();
+    }
+}
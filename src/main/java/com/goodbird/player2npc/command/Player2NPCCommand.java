@@ -0,0 +1,189 @@
+package com.goodbird.player2npc.command;
+
+import com.goodbird.player2npc.Player2NPC;
+import com.goodbird.player2npc.api.Player2ApiClient;
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import com.goodbird.player2npc.companion.CompanionRegistry;
+import com.goodbird.player2npc.companion.CompanionSpawnQueue;
+import com.goodbird.player2npc.companion.CompanionTickGovernor;
+import com.goodbird.player2npc.companion.GreetingDispatcher;
+import com.goodbird.player2npc.network.CompanionTrackingPolicy;
+import com.goodbird.player2npc.util.TickProfiler;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Server side admin command: /player2npc ...
+ */
+public class Player2NPCCommand {
+    private static final int DEFAULT_TOP_COMPANIONS = 10;
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal(Player2NPC.MOD_ID)
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("companions")
+                        .executes(Player2NPCCommand::printCompanions))
+                .then(CommandManager.literal("network")
+                        .executes(context -> printNetwork(context, DEFAULT_TOP_COMPANIONS))
+                        .then(CommandManager.argument("top", IntegerArgumentType.integer(1, 50))
+                                .executes(context -> printNetwork(context,
+                                        IntegerArgumentType.getInteger(context, "top")))))
+                .then(CommandManager.literal("greetings")
+                        .executes(Player2NPCCommand::printGreetings))
+                .then(CommandManager.literal("api")
+                        .executes(Player2NPCCommand::printApi))
+                .then(CommandManager.literal("profile")
+                        .then(CommandManager.literal("on").executes(context -> setProfiling(context, true)))
+                        .then(CommandManager.literal("off").executes(context -> setProfiling(context, false)))
+                        .then(CommandManager.literal("reset").executes(Player2NPCCommand::resetProfiling))
+                        .then(CommandManager.literal("report")
+                                .executes(context -> printProfile(context, DEFAULT_TOP_COMPANIONS))
+                                .then(CommandManager.argument("top", IntegerArgumentType.integer(1, 50))
+                                        .executes(context -> printProfile(context,
+                                                IntegerArgumentType.getInteger(context, "top")))))));
+    }
+
+    private static int setProfiling(CommandContext<ServerCommandSource> context, boolean enabled) {
+        TickProfiler.setEnabled(enabled);
+        context.getSource().sendFeedback(() -> Text.literal("Companion profiling " + (enabled ? "enabled" : "disabled")), true);
+        return 1;
+    }
+
+    private static int resetProfiling(CommandContext<ServerCommandSource> context) {
+        TickProfiler.reset();
+        context.getSource().sendFeedback(() -> Text.literal("Companion profiling window reset"), true);
+        return 1;
+    }
+
+    private static int printProfile(CommandContext<ServerCommandSource> context, int top) {
+        ServerCommandSource source = context.getSource();
+        double windowSeconds = TickProfiler.getWindowNanos() / 1.0E9;
+        source.sendFeedback(() -> Text.literal(String.format("Companion profile over %.1fs (%s), phases are inclusive:",
+                windowSeconds, TickProfiler.isEnabled() ? "running" : "stopped")), false);
+
+        for (TickProfiler.Phase phase : TickProfiler.Phase.values()) {
+            TickProfiler.PhaseSummary summary = TickProfiler.summarize(phase);
+            if (summary.count() == 0) {
+                continue;
+            }
+            String line = String.format("  %s: n=%d mean=%.1fus p99=%.1fus max=%.1fus total=%.1fms",
+                    phase.label, summary.count(), micros(summary.meanNanos()), micros(summary.p99Nanos()),
+                    micros(summary.maxNanos()), summary.totalNanos() / 1.0E6);
+            source.sendFeedback(() -> Text.literal(line), false);
+        }
+
+        List<AutomatoneEntity> profiled = new ArrayList<>();
+        for (AutomatoneEntity companion : CompanionRegistry.get(source.getServer()).getAll()) {
+            if (companion.tickStats.isCurrent()) {
+                profiled.add(companion);
+            }
+        }
+        profiled.sort(Comparator.comparingLong((AutomatoneEntity companion) -> companion.tickStats.getTotalNanos()).reversed());
+        source.sendFeedback(() -> Text.literal(String.format("Top %d of %d profiled companions:",
+                Math.min(top, profiled.size()), profiled.size())), false);
+        for (AutomatoneEntity companion : profiled.subList(0, Math.min(top, profiled.size()))) {
+            TickProfiler.CompanionStats stats = companion.tickStats;
+            String line = String.format("  %s [%s]: n=%d mean=%.1fus p99=%.1fus total=%.1fms",
+                    companion.getDisplayName().getString(), companion.getWorld().getRegistryKey().getValue(),
+                    stats.getCount(), micros(stats.getMeanNanos()), micros(stats.getP99Nanos()),
+                    stats.getTotalNanos() / 1.0E6);
+            source.sendFeedback(() -> Text.literal(line), false);
+        }
+        return profiled.size();
+    }
+
+    private static int printNetwork(CommandContext<ServerCommandSource> context, int top) {
+        ServerCommandSource source = context.getSource();
+        List<AutomatoneEntity> companions = new ArrayList<>(CompanionRegistry.get(source.getServer()).getAll());
+        long syncBytes = 0;
+        long spawnBytes = 0;
+        for (AutomatoneEntity companion : companions) {
+            syncBytes += companion.trackingPolicy.getSyncBytes();
+            spawnBytes += companion.trackingPolicy.getSpawnBytes();
+        }
+        String total = String.format("Companion outbound traffic: %.1f KiB tracker sync, %.1f KiB spawn packets (%d companions)",
+                syncBytes / 1024.0, spawnBytes / 1024.0, companions.size());
+        source.sendFeedback(() -> Text.literal(total), false);
+
+        companions.sort(Comparator.comparingLong((AutomatoneEntity companion) -> companion.trackingPolicy.getTotalBytes()).reversed());
+        for (AutomatoneEntity companion : companions.subList(0, Math.min(top, companions.size()))) {
+            CompanionTrackingPolicy policy = companion.trackingPolicy;
+            String line = String.format("  %s: sync every %d ticks, %d sync packets / %.1f KiB, %d spawn packets / %.1f KiB",
+                    companion.getDisplayName().getString(), policy.getInterval(), policy.getSyncPackets(),
+                    policy.getSyncBytes() / 1024.0, policy.getSpawnPackets(), policy.getSpawnBytes() / 1024.0);
+            source.sendFeedback(() -> Text.literal(line), false);
+        }
+        return companions.size();
+    }
+
+    private static int printGreetings(CommandContext<ServerCommandSource> context) {
+        String line = String.format("Greetings: %d queued, %d sent, queue latency mean=%.0fms max=%.0fms, per tick mean=%.1f max=%d",
+                GreetingDispatcher.getQueued(), GreetingDispatcher.getReleased(), GreetingDispatcher.getMeanLatencyMs(),
+                GreetingDispatcher.getMaxLatencyMs(), GreetingDispatcher.getMeanBatchSize(), GreetingDispatcher.getMaxBatchSize());
+        context.getSource().sendFeedback(() -> Text.literal(line), false);
+        return GreetingDispatcher.getQueued();
+    }
+
+    private static int printApi(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String state = String.format("Player2 API: breaker %s, %d running, %d queued",
+                Player2ApiClient.getBreakerState(), Player2ApiClient.getActiveCalls(), Player2ApiClient.getQueueDepth());
+        String outcomes = String.format("  calls=%d ok=%d failed=%d timed out=%d slow=%d rejected=%d short-circuited=%d",
+                Player2ApiClient.getCalls(), Player2ApiClient.getSucceeded(), Player2ApiClient.getFailed(),
+                Player2ApiClient.getTimedOut(), Player2ApiClient.getSlow(), Player2ApiClient.getRejected(),
+                Player2ApiClient.getShortCircuited());
+        String latency = String.format("  latency mean=%.1fms max=%.1fms, queue wait mean=%.1fms",
+                Player2ApiClient.getMeanLatencyNanos() / 1.0E6, Player2ApiClient.getMaxLatencyNanos() / 1.0E6,
+                Player2ApiClient.getMeanQueueWaitNanos() / 1.0E6);
+        source.sendFeedback(() -> Text.literal(state), false);
+        source.sendFeedback(() -> Text.literal(outcomes), false);
+        source.sendFeedback(() -> Text.literal(latency), false);
+        return (int) Player2ApiClient.getCalls();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static int printCompanions(CommandContext<ServerCommandSource> context) {
+        int active = 0;
+        int dormant = 0;
+        // Active and dormant counts per world
+        Map<Identifier, int[]> counts = new TreeMap<>();
+        for (AutomatoneEntity companion : CompanionRegistry.get(context.getSource().getServer()).getAll()) {
+            int[] worldCounts = counts.computeIfAbsent(companion.getWorld().getRegistryKey().getValue(), id -> new int[2]);
+            if (companion.isDormant()) {
+                worldCounts[1]++;
+                dormant++;
+            } else {
+                worldCounts[0]++;
+                active++;
+            }
+        }
+        counts.forEach((world, worldCounts) -> {
+            String line = String.format("%s: %d active, %d dormant", world, worldCounts[0], worldCounts[1]);
+            context.getSource().sendFeedback(() -> Text.literal(line), false);
+        });
+        String total = String.format("Companions: %d active, %d dormant", active, dormant);
+        context.getSource().sendFeedback(() -> Text.literal(total), false);
+        String load = String.format("Average tick %.1f ms, load shedding %s",
+                CompanionTickGovernor.getAverageMspt(), CompanionTickGovernor.getLevel());
+        context.getSource().sendFeedback(() -> Text.literal(load), false);
+        String queue = String.format("Spawn queue: %d companions for %d players, %d spawned, wait mean %.1f / max %d ticks",
+                CompanionSpawnQueue.getQueuedCompanions(), CompanionSpawnQueue.getWaitingPlayers(),
+                CompanionSpawnQueue.getSpawned(), CompanionSpawnQueue.getMeanWaitTicks(), CompanionSpawnQueue.getMaxWaitTicks());
+        context.getSource().sendFeedback(() -> Text.literal(queue), false);
+        return active + dormant;
+    }
+}
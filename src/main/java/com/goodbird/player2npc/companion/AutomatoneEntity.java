@@ -14,6 +14,10 @@ import baritone.api.entity.LivingEntityInteractionManager;
 import baritone.api.entity.LivingEntityInventory;
 import com.goodbird.player2npc.Player2NPC;
 import com.goodbird.player2npc.network.AutomatonSpawnPacket;
+import com.goodbird.player2npc.network.CharacterDictionary;
+import com.goodbird.player2npc.network.CompanionTrackingPolicy;
+import com.goodbird.player2npc.network.InventoryDeltaTracker;
+import com.goodbird.player2npc.util.TickProfiler;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
@@ -21,21 +25,27 @@ import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.attribute.EntityAttributes;
+import net.minecraft.entity.damage.DamageSource;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.Packet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.Arm;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.GameRules;
 import net.minecraft.world.World;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * We implement:
  * - IAutomatone for this entity to be counted as an automatone (used for
@@ -57,13 +67,44 @@ public class AutomatoneEntity extends LivingEntity
 
     // Player2 Character
     public Character character;
+    private long characterHash;
+
+    // Companions loaded from disk only build their controller once the owner comes in range
+    private static final int ACTIVATION_CHECK_INTERVAL = 20;
+    private int nextActivationCheck = 0;
+
+    // Owner of this companion, saved so the registry can index it before the controller knows the owner
+    private UUID ownerUuid;
 
     // An identifier of a loading texture (used in rendering)
     public Identifier textureLocation;
+    // Skin this companion holds a texture reference to, released when it unloads (client side only)
+    public String skinReference;
 
     // Previous motion (used in rendering)
     protected Vec3d lastVelocity;
 
+    // Hibernation state (server side only)
+    private static final int DORMANCY_CHECK_INTERVAL = 20;
+    private boolean dormant = false;
+    private int lastBusyAge = 0;
+    private int nextDormancyCheck = 0;
+
+    // Tick cost of this companion, filled while the profiler is enabled
+    public final TickProfiler.CompanionStats tickStats = new TickProfiler.CompanionStats();
+
+    // Adaptive tracker sync and outbound byte counters (server side only)
+    public final CompanionTrackingPolicy trackingPolicy = new CompanionTrackingPolicy();
+
+    // Sends changed inventory slots to the tracking players (server side only)
+    private final InventoryDeltaTracker inventoryTracker = new InventoryDeltaTracker();
+
+    // Tick level of detail scheduler (server side only)
+    private final CompanionTickLod tickLod = new CompanionTickLod();
+
+    // Reusable buffer for the item index query in pickupItems()
+    private final List<ItemEntity> nearbyItems = new ArrayList<>();
+
     // A final field for defining your game id
     private final String PLAYER2_GAME_ID = "player2-ai-npc-minecraft";
 
@@ -84,7 +125,6 @@ public class AutomatoneEntity extends LivingEntity
 
             if (!getWorld().isClient && character != null) {
                 this.controller = new AltoClefController(IBaritone.KEY.get(this), character, PLAYER2_GAME_ID);
-                ConversationManager.sendGreeting(this.controller, character);
             }
         } catch (Exception e) {
             Player2NPC.LOGGER.error("Error initializing AutomatoneEntity", e);
@@ -97,6 +137,52 @@ public class AutomatoneEntity extends LivingEntity
         setCharacter(character); // If we got a character, we store it
         init();
         this.controller.setOwner(owner);
+        this.ownerUuid = owner.getUuid();
+        GreetingDispatcher.enqueue(this);
+    }
+
+    /**
+     * Rebuilds a parked companion from its saved entity NBT, without greeting the owner again.
+     */
+    public static AutomatoneEntity restore(ServerWorld world, NbtCompound tag, PlayerEntity owner) {
+        AutomatoneEntity companion = new AutomatoneEntity(Player2NPC.AUTOMATONE, world);
+        companion.readNbt(tag);
+        if (companion.character == null) {
+            return null;
+        }
+        companion.ownerUuid = owner.getUuid();
+        companion.activateController(owner);
+        return companion;
+    }
+
+    // Builds the controller of a companion loaded from disk. No greeting, the owner already met it
+    private void activateController(PlayerEntity owner) {
+        controller = new AltoClefController(IBaritone.KEY.get(this), character, PLAYER2_GAME_ID);
+        if (owner != null) {
+            controller.setOwner(owner);
+        }
+        Player2NPC.LOGGER.debug("Activated controller of companion {}", getName().getString());
+    }
+
+    // Called every tick while the controller doesn't exist yet, returns whether it exists now
+    private boolean tryActivateController() {
+        if (character == null || age < nextActivationCheck) {
+            return false;
+        }
+        nextActivationCheck = age + ACTIVATION_CHECK_INTERVAL;
+        double range = com.goodbird.player2npc.config.ConfigManager.getLazyActivationDistance();
+        PlayerEntity owner = ownerUuid != null && getServer() != null
+                ? getServer().getPlayerManager().getPlayer(ownerUuid) : null;
+        if (owner != null) {
+            if (owner.getWorld() != getWorld() || owner.squaredDistanceTo(this) > range * range) {
+                return false;
+            }
+        } else if (ownerUuid != null || getWorld().getClosestPlayer(this, range) == null) {
+            // Companions saved before owners were stored wait for any player instead
+            return false;
+        }
+        activateController(owner);
+        return true;
     }
 
     // Interface implementation (just make the getters for the managers and the
@@ -126,14 +212,24 @@ public class AutomatoneEntity extends LivingEntity
         NbtList nbtList = tag.getList("Inventory", 10);
         this.inventory.readNbt(nbtList);
         this.inventory.selectedSlot = tag.getInt("SelectedItemSlot");
-        if (character == null && tag.contains("character")) { // If we have a character stored, we read it and
-                                                              // initialize the controller with it
-            NbtCompound compound = tag.getCompound("character");
-            character = CharacterUtils.readFromNBT(compound);
-            if (controller == null) {
-                controller = new AltoClefController(IBaritone.KEY.get(this), character, PLAYER2_GAME_ID);
+        if (tag.containsUuid("owner")) {
+            this.ownerUuid = tag.getUuid("owner");
+        }
+        if (character == null && tag.contains("character_ref") && getServer() != null) {
+            // The character is stored once in the world's CharacterTable, the controller is built lazily
+            // (see tryActivateController)
+            Character stored = CharacterTable.get(getServer()).get(tag.getLong("character_ref"));
+            if (stored != null) {
+                setCharacter(stored);
             }
-            ConversationManager.sendGreeting(controller, character);
+        }
+        // Inline character, saved before the CharacterTable existed or before the table held it
+        if (character == null && tag.contains("character")) {
+            NbtCompound compound = tag.getCompound("character");
+            setCharacter(CharacterUtils.readFromNBT(compound));
+        }
+        if (character == null && tag.contains("character_ref")) {
+            Player2NPC.LOGGER.warn("Companion {} refers to an unknown character", getUuid());
         }
     }
 
@@ -143,7 +239,17 @@ public class AutomatoneEntity extends LivingEntity
         tag.putFloat("head_yaw", this.headYaw);
         tag.put("Inventory", this.inventory.writeNbt(new NbtList()));
         tag.putInt("SelectedItemSlot", this.inventory.selectedSlot);
-        if (character != null) {
+        if (ownerUuid != null) {
+            tag.putUuid("owner", ownerUuid);
+        }
+        if (character != null && getServer() != null) {
+            tag.putLong("character_ref", getCharacterHash());
+            if (!CharacterTable.get(getServer()).isPersisted(getCharacterHash())) {
+                NbtCompound compound = new NbtCompound();
+                CharacterUtils.writeToNBT(compound, character);
+                tag.put("character", compound);
+            }
+        } else if (character != null) {
             NbtCompound compound = new NbtCompound();
             CharacterUtils.writeToNBT(compound, character);
             tag.put("character", compound);
@@ -153,53 +259,195 @@ public class AutomatoneEntity extends LivingEntity
     // We tick all the managers and stuff
     @Override
     public void tick() {
+        long profileStart = this.getWorld().isClient ? 0L : TickProfiler.start();
+        tickCompanion();
+        if (!this.getWorld().isClient) {
+            trackingPolicy.update(this);
+            inventoryTracker.update(this);
+        }
+        TickProfiler.end(TickProfiler.Phase.ENTITY_TICK, profileStart, tickStats);
+    }
+
+    private void tickCompanion() {
         this.lastVelocity = this.getVelocity(); // Setting prev velocity for rendering
-        manager.update();
-        inventory.updateItems();
+        if (!this.getWorld().isClient) {
+            if (controller == null && !tryActivateController()) {
+                super.tick(); // Not activated yet, only vanilla physics
+                return;
+            }
+            updateDormancy();
+            if (dormant) { // Dormant companions only keep vanilla physics
+                super.tick();
+                return;
+            }
+        }
+        // On the server, far away companions only update every few ticks (see CompanionTickLod)
+        int elapsedTicks = this.getWorld().isClient ? 1 : tickLod.advance(this);
+        for (int i = 0; i < elapsedTicks; i++) { // Catch up on the skipped ticks for the per-tick counters
+            manager.update();
+            inventory.updateItems();
+        }
         // hungerManager.update(this); //if you want your automatone to feel hunger -
         // you need to uncomment that
         lastAttackedTicks++; // Tick this for the NPC to attack (LivingEntities don't do that by default)
-        if (!this.getWorld().isClient) // We tick the controller only on server side
+        if (!this.getWorld().isClient && elapsedTicks > 0) { // We tick the controller only on server side
+            long controllerStart = TickProfiler.start();
             controller.serverTick();
+            TickProfiler.end(TickProfiler.Phase.CONTROLLER_TICK, controllerStart);
+        }
         super.tick();
         tickHandSwing(); // For arm swing rendering
     }
 
+    // Puts the companion to sleep or wakes it up. Cheap checks run every tick, the rest once a second
+    private void updateDormancy() {
+        if (!com.goodbird.player2npc.config.ConfigManager.isHibernationEnabled() || controller == null) {
+            if (dormant) {
+                wake("hibernation disabled");
+            }
+            return;
+        }
+        PlayerEntity owner = controller.getOwner();
+        if (dormant) {
+            if (isOwnerNearby(owner)) {
+                wake("owner nearby");
+            } else if (age >= nextDormancyCheck) {
+                nextDormancyCheck = age + DORMANCY_CHECK_INTERVAL;
+                if (getDormancyReason(owner) == null) {
+                    wake("reason cleared");
+                }
+            }
+            return;
+        }
+
+        if (controller.getUserTaskChain().isActive() || hurtTime > 0 || getAttacker() != null) {
+            lastBusyAge = age;
+        }
+        if (age < nextDormancyCheck) {
+            return;
+        }
+        nextDormancyCheck = age + DORMANCY_CHECK_INTERVAL;
+        String reason = getDormancyReason(owner);
+        if (reason != null) {
+            dormant = true;
+            Player2NPC.LOGGER.debug("Companion {} is now dormant: {}", getName().getString(), reason);
+        }
+    }
+
+    private String getDormancyReason(PlayerEntity owner) {
+        if (owner == null || owner.isRemoved()) {
+            return "owner offline";
+        }
+        if (owner.getWorld() != this.getWorld()) {
+            return "owner in another dimension";
+        }
+        int idleTicks = com.goodbird.player2npc.config.ConfigManager.getHibernationIdleSeconds() * 20;
+        if (age - lastBusyAge >= idleTicks && !isOwnerNearby(owner)) {
+            return "idle";
+        }
+        return null;
+    }
+
+    private boolean isOwnerNearby(PlayerEntity owner) {
+        if (owner == null || owner.isRemoved() || owner.getWorld() != this.getWorld()) {
+            return false;
+        }
+        double wakeDistance = com.goodbird.player2npc.config.ConfigManager.getHibernationWakeDistance();
+        return owner.squaredDistanceTo(this) <= wakeDistance * wakeDistance;
+    }
+
+    /**
+     * Brings a dormant companion back to full ticking immediately.
+     */
+    public void wake(String reason) {
+        lastBusyAge = age;
+        nextDormancyCheck = age + DORMANCY_CHECK_INTERVAL;
+        nextActivationCheck = age; // A companion that isn't activated yet checks its owner right away
+        if (dormant) {
+            dormant = false;
+            Player2NPC.LOGGER.debug("Companion {} woke up: {}", getName().getString(), reason);
+        }
+    }
+
+    // Wakes the dormant companions within chat range of the given player
+    public static void wakeNearby(PlayerEntity player, String reason) {
+        double range = ConversationManager.messagePassingMaxDistance;
+        for (AutomatoneEntity companion : player.getWorld().getEntitiesByClass(AutomatoneEntity.class,
+                player.getBoundingBox().expand(range), AutomatoneEntity::isDormant)) {
+            companion.wake(reason);
+        }
+    }
+
+    public boolean isDormant() {
+        return dormant;
+    }
+
+    @Override
+    public boolean damage(DamageSource source, float amount) {
+        if (!this.getWorld().isClient) {
+            wake("damaged");
+        }
+        return super.damage(source, amount);
+    }
+
     // We tweak motion a little bit
     @Override
     public void tickMovement() {
+        long profileStart = this.getWorld().isClient ? 0L : TickProfiler.start();
         if (this.isTouchingWater() && this.isSneaking() && this.shouldSwimInFluids()) {
             this.knockDownwards();
         }
         super.tickMovement();
         this.headYaw = this.getYaw();
-        pickupItems(); // And tick the item pickup
+        if (!dormant && controller != null) {
+            pickupItems(); // And tick the item pickup
+        }
+        TickProfiler.end(TickProfiler.Phase.TICK_MOVEMENT, profileStart);
     }
 
     public void pickupItems() {
+        long profileStart = TickProfiler.start();
         try {
             if (!this.getWorld().isClient && this.isAlive() && !this.dead
+                    && !CompanionTickGovernor.isAtLeast(CompanionTickGovernor.Level.SKIP_ITEM_PICKUP)
                     && this.getWorld().getGameRules().getBoolean(GameRules.DO_MOB_GRIEFING)) {
-                int pickupRange = com.goodbird.player2npc.config.ConfigManager.getItemPickupRange();
-                Vec3i vec3i = new Vec3i(pickupRange, pickupRange, pickupRange);
-
-                for (ItemEntity itemEntity : this.getWorld().getNonSpectatingEntities(ItemEntity.class, this
-                        .getBoundingBox().expand((double) vec3i.getX(), (double) vec3i.getY(), (double) vec3i.getZ()))) {
-                    if (itemEntity != null && !itemEntity.isRemoved() && !itemEntity.getStack().isEmpty() && !itemEntity.cannotPickup()) {
-                        ItemStack itemStack = itemEntity.getStack();
-                        int count = itemStack.getCount();
-                        if (this.getLivingInventory().insertStack(itemStack)) {
-                            this.sendPickup(itemEntity, count);
-                            if (itemStack.isEmpty()) {
-                                itemEntity.discard();
-                            }
-                        }
+                double pickupRange = com.goodbird.player2npc.config.ConfigManager.getItemPickupRange();
+                ItemEntityIndex index = ItemEntityIndex.get((ServerWorld) this.getWorld());
+                index.query(this.getBoundingBox().expand(pickupRange), nearbyItems);
+
+                boolean hasEmptySlot = this.inventory.getEmptySlot() != -1;
+                for (int i = 0; i < nearbyItems.size(); i++) {
+                    ItemEntity itemEntity = nearbyItems.get(i);
+                    if (itemEntity.getStack().isEmpty() || itemEntity.cannotPickup()) {
+                        continue;
+                    }
+                    ItemStack itemStack = itemEntity.getStack();
+                    // Fast reject: no free slot and no partial stack of this item to merge into
+                    if (!hasEmptySlot && this.inventory.getOccupiedSlotWithRoomForStack(itemStack) == -1) {
+                        index.release(itemEntity, this);
+                        continue;
+                    }
+                    if (!index.tryClaim(itemEntity, this)) {
+                        continue;
+                    }
+                    int count = itemStack.getCount();
+                    if (this.getLivingInventory().insertStack(itemStack)) {
+                        this.sendPickup(itemEntity, count);
+                        hasEmptySlot = this.inventory.getEmptySlot() != -1;
+                    }
+                    if (itemStack.isEmpty()) {
+                        itemEntity.discard(); // The index drops the claim with the entity
+                    } else {
+                        // Partly picked up or not at all, let other companions have the rest
+                        index.release(itemEntity, this);
                     }
                 }
+                nearbyItems.clear();
             }
         } catch (Exception e) {
             Player2NPC.LOGGER.error("Error picking up items", e);
         }
+        TickProfiler.end(TickProfiler.Phase.PICKUP_ITEMS, profileStart);
     }
 
     // Attacking function (LivingEntities don't attack by default)
@@ -281,6 +529,22 @@ public class AutomatoneEntity extends LivingEntity
 
     public void setCharacter(Character character) {
         this.character = character;
+        this.characterHash = 0L;
+        if (character != null && getServer() != null) {
+            CharacterTable.get(getServer()).put(getCharacterHash(), character);
+        }
+    }
+
+    public UUID getOwnerUuid() {
+        return ownerUuid;
+    }
+
+    // Content hash used to reference the character in packets (see CharacterDictionary)
+    public long getCharacterHash() {
+        if (characterHash == 0L && character != null) {
+            characterHash = CharacterDictionary.hash(character);
+        }
+        return characterHash;
     }
 
     // For rendering
@@ -288,6 +552,18 @@ public class AutomatoneEntity extends LivingEntity
         return this.lastVelocity.lerp(this.getVelocity(), (double) delta);
     }
 
+    // Tracking range shrinks while dormant (see CompanionTrackingPolicy)
+    @Override
+    public boolean canBeSpectated(ServerPlayerEntity spectator) {
+        if (!super.canBeSpectated(spectator)) {
+            return false;
+        }
+        double range = trackingPolicy.getTrackingRange(this);
+        double dx = spectator.getX() - this.getX();
+        double dz = spectator.getZ() - this.getZ();
+        return dx * dx + dz * dz <= range * range;
+    }
+
     // Override the spawning packet
     @Override
     public Packet<ClientPlayPacketListener> createSpawnPacket() {
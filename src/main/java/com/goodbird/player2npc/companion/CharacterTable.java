@@ -0,0 +1,91 @@
+package com.goodbird.player2npc.companion;
+
+import adris.altoclef.player2api.Character;
+import adris.altoclef.player2api.utils.CharacterUtils;
+import com.goodbird.player2npc.Player2NPC;
+import dev.onyxstudios.cca.api.v3.component.Component;
+import dev.onyxstudios.cca.api.v3.component.ComponentKey;
+import dev.onyxstudios.cca.api.v3.component.ComponentRegistry;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.World;
+
+/**
+ * Server-wide table of the characters used by companions, saved with the overworld.
+ * <p>
+ * Companion entity NBT only keeps the content hash of its character (see
+ * {@link com.goodbird.player2npc.network.CharacterDictionary#hash}) and the character itself is
+ * stored here once, however many companions and chunks refer to it. Entries are never removed
+ * since companions in unloaded chunks may still refer to them; a roster holds a handful of
+ * characters per player.
+ * <p>
+ * Characters are put here when a companion gets them, not while the companion is saved: the
+ * world saves this component before its entities. Until the table itself has been written with
+ * a character, companions keep writing the character inline as well (see {@link #isPersisted}).
+ */
+public class CharacterTable implements Component {
+    public static final ComponentKey<CharacterTable> KEY = ComponentRegistry
+            .getOrCreate(new Identifier(Player2NPC.MOD_ID, "character_table"), CharacterTable.class);
+
+    private final Long2ObjectMap<Character> _characters = new Long2ObjectOpenHashMap<>();
+    // Hashes that were part of the last written table
+    private final LongSet _persisted = new LongOpenHashSet();
+
+    public CharacterTable(World world) {
+    }
+
+    public static CharacterTable get(MinecraftServer server) {
+        return KEY.get(server.getOverworld());
+    }
+
+    public void put(long hash, Character character) {
+        _characters.putIfAbsent(hash, character);
+    }
+
+    public Character get(long hash) {
+        return _characters.get(hash);
+    }
+
+    // Whether the saved table is known to contain the character, so a reference alone is enough
+    public boolean isPersisted(long hash) {
+        return _persisted.contains(hash);
+    }
+
+    public int size() {
+        return _characters.size();
+    }
+
+    @Override
+    public void readFromNbt(NbtCompound tag) {
+        _characters.clear();
+        _persisted.clear();
+        NbtList characters = tag.getList("characters", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < characters.size(); i++) {
+            NbtCompound entry = characters.getCompound(i);
+            _characters.put(entry.getLong("hash"), CharacterUtils.readFromNBT(entry.getCompound("character")));
+            _persisted.add(entry.getLong("hash"));
+        }
+    }
+
+    @Override
+    public void writeToNbt(NbtCompound tag) {
+        NbtList characters = new NbtList();
+        for (Long2ObjectMap.Entry<Character> entry : _characters.long2ObjectEntrySet()) {
+            NbtCompound characterTag = new NbtCompound();
+            CharacterUtils.writeToNBT(characterTag, entry.getValue());
+            NbtCompound entryTag = new NbtCompound();
+            entryTag.putLong("hash", entry.getLongKey());
+            entryTag.put("character", characterTag);
+            characters.add(entryTag);
+            _persisted.add(entry.getLongKey());
+        }
+        tag.put("characters", characters);
+    }
+}
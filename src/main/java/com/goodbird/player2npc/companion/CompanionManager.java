@@ -2,12 +2,16 @@ package com.goodbird.player2npc.companion;
 
 import adris.altoclef.player2api.Character;
 import adris.altoclef.player2api.utils.CharacterUtils;
+import com.goodbird.player2npc.api.Player2ApiClient;
+import com.goodbird.player2npc.config.ConfigManager;
+import com.goodbird.player2npc.network.CharacterDictionary;
 import dev.onyxstudios.cca.api.v3.component.Component;
 import dev.onyxstudios.cca.api.v3.component.ComponentKey;
 import dev.onyxstudios.cca.api.v3.component.ComponentRegistry;
-import dev.onyxstudios.cca.api.v3.component.tick.ServerTickingComponent;
 import net.minecraft.entity.Entity;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
@@ -18,13 +22,14 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class CompanionManager implements Component, ServerTickingComponent {
+public class CompanionManager implements Component {
 
     private static final Logger LOGGER = LogManager.getLogger();
     public static final ComponentKey<CompanionManager> KEY = ComponentRegistry
@@ -34,26 +39,98 @@ public class CompanionManager implements Component, ServerTickingComponent {
 
     private final Map<String, UUID> _companionMap = new ConcurrentHashMap<>();
 
-    private List<Character> _assignedCharacters = new ArrayList<>();
-    private boolean _needsToSummon = false;
+    // Roster fetches in flight, shared by concurrent requests for the same player
+    private static final Map<UUID, CompletableFuture<Character[]>> ROSTER_FETCHES = new ConcurrentHashMap<>();
+
+    // Companions saved on disconnect, restored on the next join unless older than the TTL
+    private final Map<String, ParkedCompanion> _parked = new LinkedHashMap<>();
+
+    private record ParkedCompanion(NbtCompound entityTag, long parkedAt) {
+    }
+
+    // Last roster returned by the Player2 API, persisted so summoning doesn't wait for it on join
+    private List<Character> _cachedRoster = new ArrayList<>();
 
     public CompanionManager(ServerPlayerEntity player) {
         this._player = player;
     }
 
+    public ServerPlayerEntity getPlayer() {
+        return _player;
+    }
+
+    /**
+     * Summons the companions of the cached roster right away and refreshes the roster in the
+     * background. If the refreshed roster differs from the cache, the companions are reconciled
+     * with it once it arrives.
+     */
     public void summonAllCompanionsAsync() {
-        _needsToSummon = true;
-        CompletableFuture
-                .supplyAsync(() -> CharacterUtils.requestCharacters(_player, "player2-ai-npc-minecraft"))
-                .thenAcceptAsync(characters -> this._assignedCharacters = new ArrayList<>(Arrays.asList(characters)),
-                        _player.getServer());
+        restoreParkedCompanions();
+        if (!_cachedRoster.isEmpty()) {
+            summonCompanions(_cachedRoster, false);
+        }
+        boolean summonWhenFetched = _cachedRoster.isEmpty();
+        fetchRoster(_player).thenAcceptAsync(characters -> onRosterFetched(characters, summonWhenFetched),
+                        _player.getServer())
+                .exceptionally(e -> {
+                    LOGGER.warn("Could not fetch the roster of player {}: {}", _player.getName().getString(), e.getMessage());
+                    return null;
+                });
     }
 
-    private void summonCompanions() {
-        if (_assignedCharacters.isEmpty()) {
+    private static CompletableFuture<Character[]> fetchRoster(ServerPlayerEntity player) {
+        UUID uuid = player.getUuid();
+        CompletableFuture<Character[]> fetch = new CompletableFuture<>();
+        CompletableFuture<Character[]> inFlight = ROSTER_FETCHES.putIfAbsent(uuid, fetch);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        Player2ApiClient.requestCharacters(player)
+                .whenComplete((characters, error) -> {
+                    ROSTER_FETCHES.remove(uuid, fetch);
+                    if (error != null) {
+                        fetch.completeExceptionally(error);
+                    } else {
+                        fetch.complete(characters);
+                    }
+                });
+        return fetch;
+    }
+
+    private void onRosterFetched(Character[] characters, boolean summon) {
+        if (characters == null || characters.length == 0) {
+            // Same as before the cache existed: an empty answer leaves the companions alone
             return;
         }
-        List<String> assignedNames = _assignedCharacters.stream().map(c -> c.name()).toList();
+        List<Character> roster = new ArrayList<>(Arrays.asList(characters));
+        boolean changed = !isSameRoster(roster, _cachedRoster);
+        _cachedRoster = roster;
+        if (summon || changed) {
+            LOGGER.info("Roster for player {} {}", _player.getName().getString(), summon ? "fetched" : "changed, reconciling");
+            summonCompanions(roster, !summon);
+        }
+    }
+
+    private static boolean isSameRoster(List<Character> a, List<Character> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) == null || b.get(i) == null
+                    || CharacterDictionary.hash(a.get(i)) != CharacterDictionary.hash(b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Dismisses the companions that are no longer in the roster and hands the ones that need to
+     * be constructed to the {@link CompanionSpawnQueue}. When reconciling, companions that are
+     * already there with the same character are left alone.
+     */
+    private void summonCompanions(List<Character> roster, boolean reconcileOnly) {
+        List<String> assignedNames = roster.stream().filter(c -> c != null).map(c -> c.name()).toList();
         List<String> toDismiss = new ArrayList<>();
         _companionMap.forEach((name, uuid) -> {
             if (!assignedNames.contains(name)) {
@@ -62,12 +139,29 @@ public class CompanionManager implements Component, ServerTickingComponent {
         });
         toDismiss.forEach(this::dismissCompanion);
 
-        this._assignedCharacters.stream().filter(character -> character != null).forEach(character -> {
-            LOGGER.info("summonCompanions for character={}", character);
-            this.ensureCompanionExists(character);
+        List<Character> toSpawn = new ArrayList<>();
+        roster.stream().filter(character -> character != null).forEach(character -> {
+            AutomatoneEntity existing = getCompanion(character.name());
+            if (existing == null) {
+                toSpawn.add(character);
+            } else if (!reconcileOnly) {
+                this.ensureCompanionExists(character); // Only teleports the existing companion
+            } else if (existing.getCharacterHash() != CharacterDictionary.hash(character)) {
+                // The character changed since it was cached, the controller has to be rebuilt
+                dismissCompanion(character.name());
+                toSpawn.add(character);
+            }
         });
+        CompanionSpawnQueue.enqueue(this, toSpawn);
+    }
 
-        _assignedCharacters.clear();
+    private AutomatoneEntity getCompanion(String characterName) {
+        UUID uuid = _companionMap.get(characterName);
+        if (uuid == null || _player.getServer() == null) {
+            return null;
+        }
+        AutomatoneEntity companion = CompanionRegistry.get(_player.getServer()).getCompanion(uuid);
+        return companion != null && companion.isAlive() ? companion : null;
     }
 
     public void ensureCompanionExists(Character character) {
@@ -92,7 +186,8 @@ public class CompanionManager implements Component, ServerTickingComponent {
                 1,
                 _player.getRandom().nextInt(3) - 1);
 
-        if (existingCompanion instanceof AutomatoneEntity && existingCompanion.isAlive()) {
+        if (existingCompanion instanceof AutomatoneEntity companion && existingCompanion.isAlive()) {
+            companion.wake("summoned");
             existingCompanion.teleport(spawnPos.getX() + 0.5, spawnPos.getY(), spawnPos.getZ() + 0.5);
             LOGGER.info("Teleported existing companion: {} for player {}", character.name(), _player.getName().getString());
         } else {
@@ -119,13 +214,11 @@ public class CompanionManager implements Component, ServerTickingComponent {
         UUID companionUuid = _companionMap.remove(characterName);
         if (companionUuid != null && _player.getServer() != null) {
             try {
-                for (ServerWorld world : _player.getServer().getWorlds()) {
-                    Entity companion = world.getEntity(companionUuid);
-                    if (companion instanceof AutomatoneEntity) {
-                        companion.discard();
-                        LOGGER.info("Dismissed companion: {} for player {}", characterName, _player.getName().getString());
-                        return;
-                    }
+                AutomatoneEntity companion = CompanionRegistry.get(_player.getServer()).getCompanion(companionUuid);
+                if (companion != null) {
+                    companion.discard();
+                    LOGGER.info("Dismissed companion: {} for player {}", characterName, _player.getName().getString());
+                    return;
                 }
                 LOGGER.debug("Companion {} not found in any world", characterName);
             } catch (Exception e) {
@@ -140,6 +233,67 @@ public class CompanionManager implements Component, ServerTickingComponent {
         _companionMap.clear();
     }
 
+    /**
+     * Saves every active companion to a snapshot and removes it from the world. Used on
+     * disconnect instead of dismissing, so a rejoin doesn't rebuild and greet them again.
+     */
+    public void parkAllCompanions() {
+        if (!ConfigManager.isParkingEnabled()) {
+            dismissAllCompanions();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        _companionMap.forEach((name, uuid) -> {
+            AutomatoneEntity companion = getCompanion(name);
+            if (companion != null) {
+                NbtCompound entityTag = new NbtCompound();
+                companion.writeNbt(entityTag);
+                // Restored next to the player, the old position and motion are not needed
+                entityTag.remove("Pos");
+                entityTag.remove("Motion");
+                entityTag.remove("Rotation");
+                _parked.put(name, new ParkedCompanion(entityTag, now));
+                companion.discard();
+            }
+        });
+        LOGGER.info("Parked {} companions for player {}", _parked.size(), _player.getName().getString());
+        _companionMap.clear();
+    }
+
+    private void restoreParkedCompanions() {
+        if (_parked.isEmpty()) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() - ConfigManager.getParkingTtlMinutes() * 60_000L;
+        ServerWorld world = _player.getServerWorld();
+        int restored = 0;
+        for (Map.Entry<String, ParkedCompanion> entry : _parked.entrySet()) {
+            if (entry.getValue().parkedAt() < expiry || _companionMap.containsKey(entry.getKey())) {
+                continue;
+            }
+            try {
+                AutomatoneEntity companion = AutomatoneEntity.restore(world, entry.getValue().entityTag(), _player);
+                if (companion == null) {
+                    continue;
+                }
+                BlockPos spawnPos = _player.getBlockPos().add(
+                        _player.getRandom().nextInt(3) - 1,
+                        1,
+                        _player.getRandom().nextInt(3) - 1);
+                companion.refreshPositionAndAngles(spawnPos.getX() + 0.5, spawnPos.getY(), spawnPos.getZ() + 0.5,
+                        _player.getYaw(), 0);
+                if (world.spawnEntity(companion)) {
+                    _companionMap.put(entry.getKey(), companion.getUuid());
+                    restored++;
+                }
+            } catch (Exception e) {
+                LOGGER.error("Failed to restore parked companion {} for player {}", entry.getKey(), _player.getName().getString(), e);
+            }
+        }
+        LOGGER.info("Restored {} of {} parked companions for player {}", restored, _parked.size(), _player.getName().getString());
+        _parked.clear();
+    }
+
     public List<AutomatoneEntity> getActiveCompanions() {
         List<AutomatoneEntity> companions = new ArrayList<>();
 
@@ -149,15 +303,13 @@ public class CompanionManager implements Component, ServerTickingComponent {
         }
 
         try {
+            CompanionRegistry registry = CompanionRegistry.get(_player.getServer());
             for (UUID uuid : _companionMap.values()) {
                 if (uuid == null) continue;
 
-                for (ServerWorld world : _player.getServer().getWorlds()) {
-                    Entity entity = world.getEntity(uuid);
-                    if (entity instanceof AutomatoneEntity companion && companion.isAlive()) {
-                        companions.add(companion);
-                        break;
-                    }
+                AutomatoneEntity companion = registry.getCompanion(uuid);
+                if (companion != null && companion.isAlive()) {
+                    companions.add(companion);
                 }
             }
         } catch (Exception e) {
@@ -167,12 +319,8 @@ public class CompanionManager implements Component, ServerTickingComponent {
         return companions;
     }
 
-    @Override
-    public void serverTick() {
-        if (_needsToSummon) {
-            summonCompanions();
-            _needsToSummon = false;
-        }
+    public void wakeCompanions(String reason) {
+        getActiveCompanions().forEach(companion -> companion.wake(reason));
     }
 
     @Override
@@ -181,6 +329,17 @@ public class CompanionManager implements Component, ServerTickingComponent {
         for (String key : companionsTag.getKeys()) {
             _companionMap.put(key, companionsTag.getUuid(key));
         }
+        _cachedRoster = new ArrayList<>();
+        NbtList rosterTag = tag.getList("roster", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < rosterTag.size(); i++) {
+            _cachedRoster.add(CharacterUtils.readFromNBT(rosterTag.getCompound(i)));
+        }
+        _parked.clear();
+        NbtCompound parkedTag = tag.getCompound("parked");
+        for (String key : parkedTag.getKeys()) {
+            NbtCompound companionTag = parkedTag.getCompound(key);
+            _parked.put(key, new ParkedCompanion(companionTag.getCompound("entity"), companionTag.getLong("parked_at")));
+        }
     }
 
     @Override
@@ -188,5 +347,20 @@ public class CompanionManager implements Component, ServerTickingComponent {
         NbtCompound companionsTag = new NbtCompound();
         _companionMap.forEach(companionsTag::putUuid);
         tag.put("companions", companionsTag);
+        NbtList rosterTag = new NbtList();
+        for (Character character : _cachedRoster) {
+            NbtCompound characterTag = new NbtCompound();
+            CharacterUtils.writeToNBT(characterTag, character);
+            rosterTag.add(characterTag);
+        }
+        tag.put("roster", rosterTag);
+        NbtCompound parkedTag = new NbtCompound();
+        _parked.forEach((name, parked) -> {
+            NbtCompound companionTag = new NbtCompound();
+            companionTag.put("entity", parked.entityTag());
+            companionTag.putLong("parked_at", parked.parkedAt());
+            parkedTag.put(name, companionTag);
+        });
+        tag.put("parked", parkedTag);
     }
 }
\ No newline at end of file
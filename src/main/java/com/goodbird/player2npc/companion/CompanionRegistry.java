@@ -0,0 +1,107 @@
+package com.goodbird.player2npc.companion;
+
+import com.goodbird.player2npc.Player2NPC;
+import dev.onyxstudios.cca.api.v3.component.Component;
+import dev.onyxstudios.cca.api.v3.component.ComponentKey;
+import dev.onyxstudios.cca.api.v3.component.ComponentRegistry;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.World;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Server-wide index of the loaded companions, by entity uuid and by owner uuid.
+ * <p>
+ * Attached to the overworld only and used for the whole server. The indices are kept up to
+ * date from the entity load and unload events (which also cover dimension changes) and are
+ * not saved: they are rebuilt as the companions load.
+ */
+public class CompanionRegistry implements Component {
+    public static final ComponentKey<CompanionRegistry> KEY = ComponentRegistry
+            .getOrCreate(new Identifier(Player2NPC.MOD_ID, "companion_registry"), CompanionRegistry.class);
+
+    private final Map<UUID, AutomatoneEntity> _byUuid = new LinkedHashMap<>();
+    private final Map<UUID, Set<AutomatoneEntity>> _byOwner = new HashMap<>();
+
+    public CompanionRegistry(World world) {
+    }
+
+    public static CompanionRegistry get(MinecraftServer server) {
+        return KEY.get(server.getOverworld());
+    }
+
+    public static void onEntityLoad(Entity entity, ServerWorld world) {
+        if (entity instanceof AutomatoneEntity companion) {
+            get(world.getServer()).add(companion);
+        }
+    }
+
+    public static void onEntityUnload(Entity entity, ServerWorld world) {
+        if (entity instanceof AutomatoneEntity companion) {
+            get(world.getServer()).remove(companion);
+        }
+    }
+
+    private void add(AutomatoneEntity companion) {
+        AutomatoneEntity previous = _byUuid.put(companion.getUuid(), companion);
+        if (previous != null && previous != companion) {
+            removeOwned(previous);
+        }
+        UUID owner = companion.getOwnerUuid();
+        if (owner != null) {
+            _byOwner.computeIfAbsent(owner, uuid -> new LinkedHashSet<>()).add(companion);
+        }
+    }
+
+    private void remove(AutomatoneEntity companion) {
+        // A companion that changed dimension may already be registered again from its new world
+        if (_byUuid.get(companion.getUuid()) == companion) {
+            _byUuid.remove(companion.getUuid());
+        }
+        removeOwned(companion);
+    }
+
+    private void removeOwned(AutomatoneEntity companion) {
+        UUID owner = companion.getOwnerUuid();
+        Set<AutomatoneEntity> owned = owner != null ? _byOwner.get(owner) : null;
+        if (owned != null && owned.remove(companion) && owned.isEmpty()) {
+            _byOwner.remove(owner);
+        }
+    }
+
+    public AutomatoneEntity getCompanion(UUID uuid) {
+        return _byUuid.get(uuid);
+    }
+
+    public Collection<AutomatoneEntity> getCompanionsOf(UUID owner) {
+        Set<AutomatoneEntity> owned = _byOwner.get(owner);
+        return owned != null ? Collections.unmodifiableSet(owned) : Collections.emptySet();
+    }
+
+    public Collection<AutomatoneEntity> getAll() {
+        return Collections.unmodifiableCollection(_byUuid.values());
+    }
+
+    public int size() {
+        return _byUuid.size();
+    }
+
+    @Override
+    public void readFromNbt(NbtCompound tag) {
+    }
+
+    @Override
+    public void writeToNbt(NbtCompound tag) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.goodbird.player2npc.companion;
+
+import adris.altoclef.player2api.Character;
+import com.goodbird.player2npc.config.ConfigManager;
+import com.goodbird.player2npc.util.TickProfiler;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Server-wide queue of companions waiting to be constructed.
+ * <p>
+ * Building a companion (entity, controller, greeting) is expensive, so at most a configured
+ * number are built per tick, none while the governor postpones summons. Players are served
+ * one companion at a time in order of how long they have been waiting: after being served a
+ * player goes to the back of the line. Roster fetches hand their characters over with
+ * {@link #enqueue}, a newer roster replaces the characters still waiting for that player.
+ */
+public class CompanionSpawnQueue {
+
+    private static class Request {
+        final CompanionManager manager;
+        final ArrayDeque<Character> pending;
+        long waitingSince;
+
+        Request(CompanionManager manager, List<Character> characters, long waitingSince) {
+            this.manager = manager;
+            this.pending = new ArrayDeque<>(characters);
+            this.waitingSince = waitingSince;
+        }
+    }
+
+    // Ordered by the tick each player started waiting, oldest first
+    private static final Map<UUID, Request> REQUESTS = new LinkedHashMap<>();
+    private static long tick = 0;
+    private static long spawned = 0;
+    private static long totalWaitTicks = 0;
+    private static long maxWaitTicks = 0;
+
+    public static void enqueue(CompanionManager manager, List<Character> characters) {
+        UUID uuid = manager.getPlayer().getUuid();
+        Request request = REQUESTS.get(uuid);
+        if (characters.isEmpty()) {
+            REQUESTS.remove(uuid);
+        } else if (request != null && request.manager == manager) {
+            request.pending.clear();
+            request.pending.addAll(characters);
+        } else {
+            REQUESTS.remove(uuid);
+            REQUESTS.put(uuid, new Request(manager, characters, tick));
+        }
+    }
+
+    public static void tick(MinecraftServer server) {
+        tick++;
+        if (REQUESTS.isEmpty() || CompanionTickGovernor.isAtLeast(CompanionTickGovernor.Level.POSTPONE_SUMMONS)) {
+            return;
+        }
+        long profileStart = TickProfiler.start();
+        int budget = ConfigManager.getSpawnQueueSpawnsPerTick();
+        while (budget > 0 && !REQUESTS.isEmpty()) {
+            Iterator<Map.Entry<UUID, Request>> iterator = REQUESTS.entrySet().iterator();
+            Map.Entry<UUID, Request> oldest = iterator.next();
+            Request request = oldest.getValue();
+            iterator.remove();
+            ServerPlayerEntity player = request.manager.getPlayer();
+            if (player.isDisconnected() || request.pending.isEmpty()) {
+                continue;
+            }
+
+            long waited = tick - request.waitingSince;
+            totalWaitTicks += waited;
+            maxWaitTicks = Math.max(maxWaitTicks, waited);
+            spawned++;
+            budget--;
+            request.manager.ensureCompanionExists(request.pending.poll());
+
+            if (!request.pending.isEmpty()) {
+                request.waitingSince = tick;
+                REQUESTS.put(oldest.getKey(), request);
+            }
+        }
+        TickProfiler.end(TickProfiler.Phase.SPAWN_QUEUE, profileStart);
+    }
+
+    public static void onDisconnect(ServerPlayerEntity player) {
+        REQUESTS.remove(player.getUuid());
+    }
+
+    public static void onServerStopped(MinecraftServer server) {
+        REQUESTS.clear();
+    }
+
+    public static int getWaitingPlayers() {
+        return REQUESTS.size();
+    }
+
+    public static int getQueuedCompanions() {
+        int queued = 0;
+        for (Request request : REQUESTS.values()) {
+            queued += request.pending.size();
+        }
+        return queued;
+    }
+
+    public static long getSpawned() {
+        return spawned;
+    }
+
+    public static double getMeanWaitTicks() {
+        return spawned == 0 ? 0 : totalWaitTicks / (double) spawned;
+    }
+
+    public static long getMaxWaitTicks() {
+        return maxWaitTicks;
+    }
+}
@@ -0,0 +1,103 @@
+package com.goodbird.player2npc.companion;
+
+import com.goodbird.player2npc.config.ConfigManager;
+import net.minecraft.server.MinecraftServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tick budget governor that sheds companion work while the server is overloaded.
+ * <p>
+ * The duration of every server tick is recorded from the start and end tick events. When the
+ * average over the last second goes above the budget, the shedding level goes up one step at a
+ * time; it steps back down once the average stays comfortably below the level's threshold.
+ */
+public class CompanionTickGovernor {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public enum Level {
+        NORMAL(1, 0.0),
+        DEFER_CONTROLLERS(2, 0.9),
+        SKIP_ITEM_PICKUP(4, 1.0),
+        POSTPONE_SUMMONS(8, 1.25);
+
+        // Multiplier applied to the controller tick interval of companions that are not in combat
+        public final int intervalMultiplier;
+        // Entered when the average tick time goes over this fraction of the budget
+        private final double budgetFraction;
+
+        Level(int intervalMultiplier, double budgetFraction) {
+            this.intervalMultiplier = intervalMultiplier;
+            this.budgetFraction = budgetFraction;
+        }
+    }
+
+    private static final Level[] LEVELS = Level.values();
+    private static final int WINDOW = 20;
+    // Minimum ticks between two level changes
+    private static final int LEVEL_COOLDOWN = 20;
+    // Fraction of the current level's threshold the average must drop below to step down
+    private static final double RECOVERY_FRACTION = 0.8;
+
+    private static final long[] durations = new long[WINDOW];
+    private static long durationSum = 0;
+    private static int cursor = 0;
+    private static int samples = 0;
+    private static long tickStart = 0;
+    private static int ticksSinceChange = 0;
+    private static Level level = Level.NORMAL;
+
+    public static void onStartTick(MinecraftServer server) {
+        tickStart = System.nanoTime();
+    }
+
+    public static void onEndTick(MinecraftServer server) {
+        if (tickStart == 0) {
+            return;
+        }
+        long duration = System.nanoTime() - tickStart;
+        durationSum += duration - durations[cursor];
+        durations[cursor] = duration;
+        cursor = (cursor + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+        ticksSinceChange++;
+
+        if (!ConfigManager.isTickGovernorEnabled()) {
+            setLevel(Level.NORMAL);
+            return;
+        }
+        if (samples < WINDOW || ticksSinceChange < LEVEL_COOLDOWN) {
+            return;
+        }
+
+        double averageMs = getAverageMspt();
+        double budgetMs = ConfigManager.getTickBudgetMs();
+        int ordinal = level.ordinal();
+        if (ordinal + 1 < LEVELS.length && averageMs > budgetMs * LEVELS[ordinal + 1].budgetFraction) {
+            setLevel(LEVELS[ordinal + 1]);
+        } else if (ordinal > 0 && averageMs < budgetMs * level.budgetFraction * RECOVERY_FRACTION) {
+            setLevel(LEVELS[ordinal - 1]);
+        }
+    }
+
+    private static void setLevel(Level newLevel) {
+        if (newLevel != level) {
+            LOGGER.info("Companion load shedding {} -> {} (average tick {} ms, budget {} ms)",
+                    level, newLevel, String.format("%.1f", getAverageMspt()), ConfigManager.getTickBudgetMs());
+            level = newLevel;
+            ticksSinceChange = 0;
+        }
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isAtLeast(Level other) {
+        return level.ordinal() >= other.ordinal();
+    }
+
+    public static double getAverageMspt() {
+        return samples == 0 ? 0 : durationSum / (double) samples / 1.0E6;
+    }
+}
@@ -0,0 +1,98 @@
+package com.goodbird.player2npc.companion;
+
+import com.goodbird.player2npc.config.ConfigManager;
+import net.minecraft.entity.player.PlayerEntity;
+
+/**
+ * Distance-based tick level of detail for a single companion.
+ * <p>
+ * Companions close to a player (which includes their owner) or in combat tick every
+ * server tick. Companions further away only run their expensive update every few
+ * ticks; the skipped ticks are accumulated and handed back to the caller so that
+ * per-tick counters (block breaking progress, item cooldowns) still advance in real time.
+ * <p>
+ * Under load, {@link CompanionTickGovernor} stretches the interval of every companion that
+ * isn't in combat, whether or not the distance based level of detail is enabled.
+ */
+public class CompanionTickLod {
+    // How often the nearest player distance is re-evaluated
+    private static final int EVALUATE_INTERVAL = 20;
+
+    private int _interval = 1;
+    private int _accumulated = 0;
+    private int _nextEvaluation = 0;
+
+    /**
+     * Advances the scheduler by one server tick.
+     *
+     * @return the number of elapsed ticks to process now, or 0 if this tick should be skipped
+     */
+    public int advance(AutomatoneEntity entity) {
+        boolean lodEnabled = ConfigManager.isTickLodEnabled();
+        int multiplier = CompanionTickGovernor.getLevel().intervalMultiplier;
+        if (!lodEnabled && multiplier == 1) {
+            // Full rate, hand back whatever was still accumulated
+            int elapsed = _accumulated + 1;
+            _interval = 1;
+            _accumulated = 0;
+            return elapsed;
+        }
+
+        if (isInCombat(entity)) {
+            // Combat always runs at full rate, flush whatever was accumulated so far
+            _interval = 1;
+        } else if (entity.age >= _nextEvaluation) {
+            _nextEvaluation = entity.age + EVALUATE_INTERVAL;
+            int interval = lodEnabled ? intervalForDistance(nearestPlayerDistanceSq(entity)) : 1;
+            // Companions next to their owner are deferred too: they are most of the companions,
+            // exempting them would leave the governor almost nothing to shed
+            _interval = interval * multiplier;
+        }
+
+        _accumulated++;
+        // The entity id offsets the phase so that companions sharing an interval don't all
+        // run on the same server tick; the accumulated count caps the delay at one interval.
+        if (_accumulated < _interval && Math.floorMod(entity.age + entity.getId(), _interval) != 0) {
+            return 0;
+        }
+        int elapsed = _accumulated;
+        _accumulated = 0;
+        return elapsed;
+    }
+
+    public int getInterval() {
+        return _interval;
+    }
+
+    private static boolean isInCombat(AutomatoneEntity entity) {
+        return entity.hurtTime > 0 || entity.getAttacker() != null || entity.getAttacking() != null;
+    }
+
+    public static double nearestPlayerDistanceSq(AutomatoneEntity entity) {
+        double nearest = Double.MAX_VALUE;
+        for (PlayerEntity player : entity.getWorld().getPlayers()) {
+            if (player.isSpectator()) {
+                continue;
+            }
+            nearest = Math.min(nearest, player.squaredDistanceTo(entity));
+        }
+        return nearest;
+    }
+
+    static int intervalForDistance(double distanceSq) {
+        if (distanceSq <= square(ConfigManager.getTickLodFullRateDistance())) {
+            return 1;
+        }
+        if (distanceSq <= square(ConfigManager.getTickLodNearDistance())) {
+            return ConfigManager.getTickLodNearInterval();
+        }
+        if (distanceSq <= square(ConfigManager.getTickLodFarDistance())) {
+            return ConfigManager.getTickLodFarInterval();
+        }
+        return ConfigManager.getTickLodDistantInterval();
+    }
+
+    private static double square(int value) {
+        return (double) value * value;
+    }
+}
@@ -0,0 +1,125 @@
+package com.goodbird.player2npc.companion;
+
+import adris.altoclef.player2api.manager.ConversationManager;
+import com.goodbird.player2npc.config.ConfigManager;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Queues the greetings of newly summoned companions and releases them on the server thread.
+ * <p>
+ * Every greeting turns into an LLM request, so a player summoning several companions at once
+ * would fire them all in the same tick. Greetings are grouped by owner: every owner gets at
+ * most a configured number of greetings released per interval, and no more than a global
+ * number are released per tick, oldest owner first. The conversation API greets one
+ * controller at a time, so each released greeting is still its own request.
+ */
+public class GreetingDispatcher {
+
+    private record PendingGreeting(AutomatoneEntity companion, long enqueuedAt) {
+    }
+
+    private static class OwnerQueue {
+        final ArrayDeque<PendingGreeting> pending = new ArrayDeque<>();
+        long nextRelease = 0;
+    }
+
+    private static final Map<UUID, OwnerQueue> QUEUES = new LinkedHashMap<>();
+    private static long tick = 0;
+
+    private static long released = 0;
+    private static long totalLatencyNanos = 0;
+    private static long maxLatencyNanos = 0;
+    private static long batches = 0;
+    private static int maxBatchSize = 0;
+
+    public static void enqueue(AutomatoneEntity companion) {
+        UUID owner = companion.getOwnerUuid();
+        if (owner == null) {
+            return;
+        }
+        QUEUES.computeIfAbsent(owner, uuid -> new OwnerQueue()).pending.add(new PendingGreeting(companion, System.nanoTime()));
+    }
+
+    public static void tick(MinecraftServer server) {
+        tick++;
+        if (QUEUES.isEmpty()) {
+            return;
+        }
+        int budget = ConfigManager.getGreetingsPerTick();
+        int batchSize = 0;
+        Iterator<OwnerQueue> iterator = QUEUES.values().iterator();
+        while (iterator.hasNext() && budget > 0) {
+            OwnerQueue queue = iterator.next();
+            if (tick < queue.nextRelease) {
+                continue;
+            }
+            int ownerBudget = Math.min(budget, ConfigManager.getGreetingsPerOwner());
+            while (ownerBudget > 0 && !queue.pending.isEmpty()) {
+                PendingGreeting greeting = queue.pending.poll();
+                AutomatoneEntity companion = greeting.companion();
+                if (companion.isRemoved() || companion.controller == null) {
+                    continue;
+                }
+                ConversationManager.sendGreeting(companion.controller, companion.character);
+                long latency = System.nanoTime() - greeting.enqueuedAt();
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                released++;
+                batchSize++;
+                ownerBudget--;
+                budget--;
+            }
+            queue.nextRelease = tick + ConfigManager.getGreetingOwnerIntervalTicks();
+            if (queue.pending.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        if (batchSize > 0) {
+            batches++;
+            maxBatchSize = Math.max(maxBatchSize, batchSize);
+        }
+    }
+
+    public static void onDisconnect(ServerPlayerEntity player) {
+        QUEUES.remove(player.getUuid());
+    }
+
+    public static void onServerStopped(MinecraftServer server) {
+        QUEUES.clear();
+    }
+
+    public static int getQueued() {
+        int queued = 0;
+        for (OwnerQueue queue : QUEUES.values()) {
+            queued += queue.pending.size();
+        }
+        return queued;
+    }
+
+    public static long getReleased() {
+        return released;
+    }
+
+    public static double getMeanLatencyMs() {
+        return released == 0 ? 0 : totalLatencyNanos / (double) released / 1.0E6;
+    }
+
+    public static double getMaxLatencyMs() {
+        return maxLatencyNanos / 1.0E6;
+    }
+
+    public static double getMeanBatchSize() {
+        return batches == 0 ? 0 : released / (double) batches;
+    }
+
+    public static int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+}
@@ -0,0 +1,192 @@
+package com.goodbird.player2npc.companion;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Per-world spatial hash of item entities, keyed by chunk section.
+ * <p>
+ * Companions query this index instead of running their own entity lookup every tick.
+ * Items are added and removed through the entity load/unload events and re-bucketed
+ * once per world tick when they move into another section. Each stack can be claimed
+ * by a single companion so that two companions never try to pick up the same stack.
+ */
+public class ItemEntityIndex {
+    // How long a claim survives without being renewed by its owner
+    private static final int CLAIM_TICKS = 20;
+
+    private static final Map<ServerWorld, ItemEntityIndex> INDICES = new WeakHashMap<>();
+
+    private final Long2ObjectMap<List<ItemEntity>> _buckets = new Long2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<ItemEntity> _items = new Int2ObjectOpenHashMap<>();
+    private final Int2LongMap _sectionByItem = new Int2LongOpenHashMap();
+    // Item entity id -> (expiry tick << 32 | claiming companion id)
+    private final Int2LongMap _claims = new Int2LongOpenHashMap();
+
+    private long _time;
+
+    public static ItemEntityIndex get(ServerWorld world) {
+        return INDICES.computeIfAbsent(world, w -> new ItemEntityIndex());
+    }
+
+    public static void onEntityLoad(Entity entity, ServerWorld world) {
+        if (entity instanceof ItemEntity item) {
+            get(world).add(item);
+        }
+    }
+
+    public static void onEntityUnload(Entity entity, ServerWorld world) {
+        if (entity instanceof ItemEntity item) {
+            ItemEntityIndex index = INDICES.get(world);
+            if (index != null) {
+                index.remove(item);
+            }
+        }
+    }
+
+    public static void onWorldTick(ServerWorld world) {
+        ItemEntityIndex index = INDICES.get(world);
+        if (index != null) {
+            index.tick(world.getTime());
+        }
+    }
+
+    public static void onWorldUnload(ServerWorld world) {
+        INDICES.remove(world);
+    }
+
+    private void add(ItemEntity item) {
+        if (_items.put(item.getId(), item) != null) {
+            return;
+        }
+        long section = sectionOf(item);
+        _sectionByItem.put(item.getId(), section);
+        _buckets.computeIfAbsent(section, k -> new ArrayList<>()).add(item);
+    }
+
+    private void remove(ItemEntity item) {
+        if (_items.remove(item.getId()) == null) {
+            return;
+        }
+        removeFromBucket(item, _sectionByItem.remove(item.getId()));
+        _claims.remove(item.getId());
+    }
+
+    private void removeFromBucket(ItemEntity item, long section) {
+        List<ItemEntity> bucket = _buckets.get(section);
+        if (bucket != null) {
+            bucket.remove(item);
+            if (bucket.isEmpty()) {
+                _buckets.remove(section);
+            }
+        }
+    }
+
+    // Re-buckets moved items and drops expired claims, once per world tick
+    private void tick(long time) {
+        _time = time;
+        ObjectIterator<Int2ObjectMap.Entry<ItemEntity>> iterator = Int2ObjectMaps.fastIterator(_items);
+        while (iterator.hasNext()) {
+            ItemEntity item = iterator.next().getValue();
+            long previous = _sectionByItem.get(item.getId());
+            if (item.isRemoved()) {
+                iterator.remove();
+                _sectionByItem.remove(item.getId());
+                _claims.remove(item.getId());
+                removeFromBucket(item, previous);
+                continue;
+            }
+            long current = sectionOf(item);
+            if (current != previous) {
+                removeFromBucket(item, previous);
+                _sectionByItem.put(item.getId(), current);
+                _buckets.computeIfAbsent(current, k -> new ArrayList<>()).add(item);
+            }
+        }
+
+        if (!_claims.isEmpty()) {
+            _claims.values().removeIf(claim -> (claim >>> 32) < time);
+        }
+    }
+
+    /**
+     * Collects the live item entities whose bounding box intersects the given box into {@code out}.
+     * The list is cleared first so callers can reuse it between ticks.
+     */
+    public void query(Box box, List<ItemEntity> out) {
+        out.clear();
+        if (_items.isEmpty()) {
+            return;
+        }
+        int minX = MathHelper.floor(box.minX) >> 4;
+        int minY = MathHelper.floor(box.minY) >> 4;
+        int minZ = MathHelper.floor(box.minZ) >> 4;
+        int maxX = MathHelper.floor(box.maxX) >> 4;
+        int maxY = MathHelper.floor(box.maxY) >> 4;
+        int maxZ = MathHelper.floor(box.maxZ) >> 4;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    List<ItemEntity> bucket = _buckets.get(ChunkSectionPos.asLong(x, y, z));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < bucket.size(); i++) {
+                        ItemEntity item = bucket.get(i);
+                        if (!item.isRemoved() && box.intersects(item.getBoundingBox())) {
+                            out.add(item);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims the stack for the given companion. Returns false if another companion
+     * holds a live claim on it. Claims are renewed every time the owner claims again.
+     */
+    public boolean tryClaim(ItemEntity item, Entity companion) {
+        long claim = _claims.get(item.getId());
+        if (claim != 0L && (claim >>> 32) >= _time && (int) claim != companion.getId()) {
+            return false;
+        }
+        _claims.put(item.getId(), ((_time + CLAIM_TICKS) << 32) | (companion.getId() & 0xFFFFFFFFL));
+        return true;
+    }
+
+    public void release(ItemEntity item, Entity companion) {
+        long claim = _claims.get(item.getId());
+        if (claim != 0L && (int) claim == companion.getId()) {
+            _claims.remove(item.getId());
+        }
+    }
+
+    public int size() {
+        return _items.size();
+    }
+
+    private static long sectionOf(Entity entity) {
+        return ChunkSectionPos.asLong(
+                MathHelper.floor(entity.getX()) >> 4,
+                MathHelper.floor(entity.getY()) >> 4,
+                MathHelper.floor(entity.getZ()) >> 4);
+    }
+}
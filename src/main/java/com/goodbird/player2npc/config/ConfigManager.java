@@ -13,6 +13,51 @@ public class ConfigManager {
     private static final float COMPANION_STEP_HEIGHT = 0.6f;
     private static final int ITEM_PICKUP_RANGE = 3;
     private static final boolean DO_HUNGER_TICKING = false;
+    private static final boolean TICK_LOD_ENABLED = true;
+    private static final int TICK_LOD_FULL_RATE_DISTANCE = 32;
+    private static final int TICK_LOD_NEAR_DISTANCE = 64;
+    private static final int TICK_LOD_FAR_DISTANCE = 128;
+    private static final int TICK_LOD_NEAR_INTERVAL = 2;
+    private static final int TICK_LOD_FAR_INTERVAL = 4;
+    private static final int TICK_LOD_DISTANT_INTERVAL = 10;
+    private static final boolean HIBERNATION_ENABLED = true;
+    private static final int HIBERNATION_IDLE_SECONDS = 60;
+    private static final int HIBERNATION_WAKE_DISTANCE = 24;
+    private static final boolean TICK_GOVERNOR_ENABLED = true;
+    private static final int TICK_BUDGET_MS = 50;
+    private static final boolean ADAPTIVE_TRACKING_ENABLED = true;
+    private static final int TRACKING_NEAR_DISTANCE = 16;
+    private static final int TRACKING_MID_DISTANCE = 32;
+    private static final int TRACKING_MID_INTERVAL = 2;
+    private static final int TRACKING_FAR_INTERVAL = 4;
+    private static final double TRACKING_VELOCITY_THRESHOLD = 0.02;
+    private static final boolean NETWORK_STATS_ENABLED = true;
+    private static final int PLAYER2_API_THREADS = 4;
+    private static final int PLAYER2_API_QUEUE_CAPACITY = 64;
+    private static final int PLAYER2_API_TIMEOUT_MS = 10000;
+    private static final int PLAYER2_API_SLOW_CALL_MS = 5000;
+    private static final int PLAYER2_API_BREAKER_FAILURES = 5;
+    private static final int PLAYER2_API_BREAKER_OPEN_SECONDS = 30;
+    private static final int SPAWN_QUEUE_SPAWNS_PER_TICK = 2;
+    private static final boolean PARKING_ENABLED = true;
+    private static final int PARKING_TTL_MINUTES = 30;
+    private static final int LAZY_ACTIVATION_DISTANCE = 64;
+    private static final int GREETINGS_PER_OWNER = 1;
+    private static final int GREETING_OWNER_INTERVAL_TICKS = 40;
+    private static final int GREETINGS_PER_TICK = 4;
+    private static final int SKIN_UPLOAD_BUDGET_MS = 2;
+    private static final int SKIN_WORKER_THREADS = 2;
+    private static final int SKIN_DOWNLOAD_CONCURRENCY = 4;
+    private static final int SKIN_DOWNLOAD_ATTEMPTS = 3;
+    private static final int SKIN_DOWNLOAD_BACKOFF_MS = 500;
+    private static final int SKIN_DOWNLOAD_TIMEOUT_MS = 15000;
+    private static final int SKIN_CACHE_MAX_MB = 32;
+    private static final int SKIN_CACHE_REVALIDATE_HOURS = 24;
+    private static final int SKIN_TEXTURE_GRACE_SECONDS = 30;
+    private static final int SKIN_TEXTURE_MAX_RESIDENT = 64;
+    private static final boolean SKIN_ATLAS_ENABLED = false;
+    private static final int SKIN_ATLAS_PAGE_SIZE = 1024;
+    private static final int SKIN_ATLAS_MAX_PAGES = 4;
 
     public static int getSpawnRadius() {
         return SPAWN_RADIUS;
@@ -41,4 +86,184 @@ public class ConfigManager {
     public static boolean isHungerTickingEnabled() {
         return DO_HUNGER_TICKING;
     }
+
+    public static boolean isTickLodEnabled() {
+        return TICK_LOD_ENABLED;
+    }
+
+    public static int getTickLodFullRateDistance() {
+        return TICK_LOD_FULL_RATE_DISTANCE;
+    }
+
+    public static int getTickLodNearDistance() {
+        return TICK_LOD_NEAR_DISTANCE;
+    }
+
+    public static int getTickLodFarDistance() {
+        return TICK_LOD_FAR_DISTANCE;
+    }
+
+    public static int getTickLodNearInterval() {
+        return TICK_LOD_NEAR_INTERVAL;
+    }
+
+    public static int getTickLodFarInterval() {
+        return TICK_LOD_FAR_INTERVAL;
+    }
+
+    public static int getTickLodDistantInterval() {
+        return TICK_LOD_DISTANT_INTERVAL;
+    }
+
+    public static boolean isHibernationEnabled() {
+        return HIBERNATION_ENABLED;
+    }
+
+    public static int getHibernationIdleSeconds() {
+        return HIBERNATION_IDLE_SECONDS;
+    }
+
+    public static int getHibernationWakeDistance() {
+        return HIBERNATION_WAKE_DISTANCE;
+    }
+
+    public static boolean isTickGovernorEnabled() {
+        return TICK_GOVERNOR_ENABLED;
+    }
+
+    public static int getTickBudgetMs() {
+        return TICK_BUDGET_MS;
+    }
+
+    public static boolean isAdaptiveTrackingEnabled() {
+        return ADAPTIVE_TRACKING_ENABLED;
+    }
+
+    public static int getTrackingNearDistance() {
+        return TRACKING_NEAR_DISTANCE;
+    }
+
+    public static int getTrackingMidDistance() {
+        return TRACKING_MID_DISTANCE;
+    }
+
+    public static int getTrackingMidInterval() {
+        return TRACKING_MID_INTERVAL;
+    }
+
+    public static int getTrackingFarInterval() {
+        return TRACKING_FAR_INTERVAL;
+    }
+
+    public static double getTrackingVelocityThreshold() {
+        return TRACKING_VELOCITY_THRESHOLD;
+    }
+
+    public static boolean isNetworkStatsEnabled() {
+        return NETWORK_STATS_ENABLED;
+    }
+
+    public static int getPlayer2ApiThreads() {
+        return PLAYER2_API_THREADS;
+    }
+
+    public static int getPlayer2ApiQueueCapacity() {
+        return PLAYER2_API_QUEUE_CAPACITY;
+    }
+
+    public static int getPlayer2ApiTimeoutMs() {
+        return PLAYER2_API_TIMEOUT_MS;
+    }
+
+    public static int getPlayer2ApiSlowCallMs() {
+        return PLAYER2_API_SLOW_CALL_MS;
+    }
+
+    public static int getPlayer2ApiBreakerFailures() {
+        return PLAYER2_API_BREAKER_FAILURES;
+    }
+
+    public static int getPlayer2ApiBreakerOpenSeconds() {
+        return PLAYER2_API_BREAKER_OPEN_SECONDS;
+    }
+
+    public static int getSpawnQueueSpawnsPerTick() {
+        return SPAWN_QUEUE_SPAWNS_PER_TICK;
+    }
+
+    public static boolean isParkingEnabled() {
+        return PARKING_ENABLED;
+    }
+
+    public static int getParkingTtlMinutes() {
+        return PARKING_TTL_MINUTES;
+    }
+
+    public static int getLazyActivationDistance() {
+        return LAZY_ACTIVATION_DISTANCE;
+    }
+
+    public static int getGreetingsPerOwner() {
+        return GREETINGS_PER_OWNER;
+    }
+
+    public static int getGreetingOwnerIntervalTicks() {
+        return GREETING_OWNER_INTERVAL_TICKS;
+    }
+
+    public static int getGreetingsPerTick() {
+        return GREETINGS_PER_TICK;
+    }
+
+    public static int getSkinUploadBudgetMs() {
+        return SKIN_UPLOAD_BUDGET_MS;
+    }
+
+    public static int getSkinWorkerThreads() {
+        return SKIN_WORKER_THREADS;
+    }
+
+    public static int getSkinDownloadConcurrency() {
+        return SKIN_DOWNLOAD_CONCURRENCY;
+    }
+
+    public static int getSkinDownloadAttempts() {
+        return SKIN_DOWNLOAD_ATTEMPTS;
+    }
+
+    public static int getSkinDownloadBackoffMs() {
+        return SKIN_DOWNLOAD_BACKOFF_MS;
+    }
+
+    public static int getSkinDownloadTimeoutMs() {
+        return SKIN_DOWNLOAD_TIMEOUT_MS;
+    }
+
+    public static int getSkinCacheMaxMb() {
+        return SKIN_CACHE_MAX_MB;
+    }
+
+    public static int getSkinCacheRevalidateHours() {
+        return SKIN_CACHE_REVALIDATE_HOURS;
+    }
+
+    public static int getSkinTextureGraceSeconds() {
+        return SKIN_TEXTURE_GRACE_SECONDS;
+    }
+
+    public static int getSkinTextureMaxResident() {
+        return SKIN_TEXTURE_MAX_RESIDENT;
+    }
+
+    public static boolean isSkinAtlasEnabled() {
+        return SKIN_ATLAS_ENABLED;
+    }
+
+    public static int getSkinAtlasPageSize() {
+        return SKIN_ATLAS_PAGE_SIZE;
+    }
+
+    public static int getSkinAtlasMaxPages() {
+        return SKIN_ATLAS_MAX_PAGES;
+    }
 }
@@ -1,23 +1,68 @@
 package com.goodbird.player2npc.inventory;
 
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.registry.tag.TagKey;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Fixed size inventory with indices for the common queries.
+ * <p>
+ * Besides the slots it keeps the total count per {@link Item} and per item tag, a bitset of the
+ * empty slots and, per item, the slots holding a stack that isn't full yet. Counts are O(1) and
+ * inserts only look at the partial stacks of the same item and the first empty slot.
+ * <p>
+ * {@link #getStack}, {@link #getSelectedStack} and {@link #getItems} return the live stacks and
+ * {@link #setStack} keeps the stack it is given, so callers may still change a stack in place.
+ * Those slots are remembered as lent, together with a copy of the stack as it was indexed, and
+ * every query first re-indexes the lent slots whose stack no longer matches its copy. Slots
+ * filled by {@link #addItem} or read from NBT hold stacks nobody else has and cost nothing extra.
+ * <p>
+ * The NBT form is a versioned list of slot tagged stacks; the older layout with one
+ * {@code "Item" + slot} key per stack is still read. The last written tag is kept as long as
+ * nothing changed, so autosaves of an untouched inventory only copy it instead of serializing
+ * every stack again. Every method that changes a slot or the selected slot clears it, and so
+ * does a lent stack found changed.
+ */
 public class InventoryManager {
     private static final Logger LOGGER = LogManager.getLogger();
 
-    private List<ItemStack> items = new ArrayList<>();
+    private static final int SIZE = 36;
+    private static final int NBT_VERSION = 2;
+
+    private final ItemStack[] items = new ItemStack[SIZE];
     private int selectedSlot = 0;
 
+    private final Object2IntOpenHashMap<Item> itemCounts = new Object2IntOpenHashMap<>();
+    private final Object2IntOpenHashMap<TagKey<Item>> tagCounts = new Object2IntOpenHashMap<>();
+    private final BitSet freeSlots = new BitSet(SIZE);
+    private final Map<Item, IntSortedSet> partialStacks = new HashMap<>();
+    // Slots whose stack a caller may hold, checked against indexed[] before every query
+    private final BitSet lentSlots = new BitSet(SIZE);
+    // The stack each slot was indexed with: the slot's own stack, or a copy for lent slots
+    private final ItemStack[] indexed = new ItemStack[SIZE];
+
+    // Last tag written by writeToNbt, null once the inventory changed
+    private NbtCompound savedTag = null;
+
     public InventoryManager() {
-        for (int i = 0; i < 36; i++) {
-            items.add(ItemStack.EMPTY);
-        }
+        Arrays.fill(items, ItemStack.EMPTY);
+        Arrays.fill(indexed, ItemStack.EMPTY);
+        freeSlots.set(0, SIZE);
     }
 
     public void addItem(ItemStack stack) {
@@ -26,16 +71,25 @@ public class InventoryManager {
         }
 
         try {
-            for (int i = 0; i < items.size(); i++) {
-                ItemStack slot = items.get(i);
-                if (slot.isEmpty()) {
-                    items.set(i, stack.copy());
-                    return;
-                }
-
-                if (slot.canCombine(stack) && slot.getCount() < slot.getMaxCount()) {
+            revalidate();
+            // Same order as a scan from the first slot: partial stacks before the first empty slot
+            // are topped up, the rest goes to the first empty slot
+            int freeSlot = freeSlots.nextSetBit(0);
+            IntSortedSet partial = partialStacks.get(stack.getItem());
+            if (partial != null) {
+                for (int i : partial.toIntArray()) {
+                    if (freeSlot != -1 && i > freeSlot) {
+                        break;
+                    }
+                    ItemStack slot = items[i];
+                    if (!slot.canCombine(stack)) {
+                        continue;
+                    }
                     int added = Math.min(stack.getCount(), slot.getMaxCount() - slot.getCount());
+                    unindex(i);
                     slot.increment(added);
+                    index(i);
+                    savedTag = null;
                     stack.decrement(added);
 
                     if (stack.isEmpty()) {
@@ -44,6 +98,15 @@ public class InventoryManager {
                 }
             }
 
+            if (freeSlot != -1) {
+                unindex(freeSlot);
+                items[freeSlot] = stack.copy();
+                lentSlots.clear(freeSlot);
+                index(freeSlot);
+                savedTag = null;
+                return;
+            }
+
             LOGGER.debug("Inventory full, cannot add item: {}", stack.getName().getString());
         } catch (Exception e) {
             LOGGER.error("Error adding item to inventory", e);
@@ -51,24 +114,84 @@ public class InventoryManager {
     }
 
     public ItemStack getStack(int slot) {
-        if (slot < 0 || slot >= items.size()) {
+        if (slot < 0 || slot >= SIZE) {
             LOGGER.warn("Invalid inventory slot: {}", slot);
             return ItemStack.EMPTY;
         }
-        return items.get(slot);
+        lend(slot);
+        return items[slot];
     }
 
     public void setStack(int slot, ItemStack stack) {
-        if (slot < 0 || slot >= items.size()) {
+        if (slot < 0 || slot >= SIZE) {
             LOGGER.warn("Invalid inventory slot: {}", slot);
             return;
         }
 
-        if (stack == null) {
-            items.set(slot, ItemStack.EMPTY);
-        } else {
-            items.set(slot, stack);
+        unindex(slot);
+        items[slot] = stack == null ? ItemStack.EMPTY : stack;
+        // The caller keeps its reference
+        lentSlots.set(slot, items[slot] != ItemStack.EMPTY);
+        index(slot);
+        savedTag = null;
+    }
+
+    private void lend(int slot) {
+        if (items[slot] != ItemStack.EMPTY && !lentSlots.get(slot)) {
+            lentSlots.set(slot);
+            indexed[slot] = items[slot].copy();
+        }
+    }
+
+    /**
+     * Re-indexes the lent slots whose stack was changed in place since they were indexed.
+     */
+    private void revalidate() {
+        for (int slot = lentSlots.nextSetBit(0); slot >= 0; slot = lentSlots.nextSetBit(slot + 1)) {
+            if (!ItemStack.areEqual(items[slot], indexed[slot])) {
+                unindex(slot);
+                index(slot);
+                savedTag = null;
+            }
+        }
+    }
+
+    private void index(int slot) {
+        ItemStack stack = items[slot];
+        indexed[slot] = lentSlots.get(slot) ? stack.copy() : stack;
+        if (stack.isEmpty()) {
+            freeSlots.set(slot);
+            return;
+        }
+        freeSlots.clear(slot);
+        int count = stack.getCount();
+        itemCounts.addTo(stack.getItem(), count);
+        stack.streamTags().forEach(tag -> tagCounts.addTo(tag, count));
+        if (stack.isStackable() && count < stack.getMaxCount()) {
+            partialStacks.computeIfAbsent(stack.getItem(), item -> new IntRBTreeSet()).add(slot);
+        }
+    }
+
+    private void unindex(int slot) {
+        ItemStack stack = indexed[slot];
+        indexed[slot] = ItemStack.EMPTY;
+        if (stack.isEmpty()) {
+            return;
+        }
+        int count = stack.getCount();
+        if (itemCounts.addTo(stack.getItem(), -count) == count) {
+            itemCounts.removeInt(stack.getItem());
+        }
+        stack.streamTags().forEach(tag -> {
+            if (tagCounts.addTo(tag, -count) == count) {
+                tagCounts.removeInt(tag);
+            }
+        });
+        IntSortedSet partial = partialStacks.get(stack.getItem());
+        if (partial != null && partial.remove(slot) && partial.isEmpty()) {
+            partialStacks.remove(stack.getItem());
         }
+        freeSlots.set(slot);
     }
 
     public int getSelectedSlot() {
@@ -76,8 +199,9 @@ public class InventoryManager {
     }
 
     public void setSelectedSlot(int slot) {
-        if (slot >= 0 && slot < items.size()) {
+        if (slot >= 0 && slot < SIZE && slot != selectedSlot) {
             selectedSlot = slot;
+            savedTag = null;
         }
     }
 
@@ -86,60 +210,131 @@ public class InventoryManager {
     }
 
     public List<ItemStack> getItems() {
-        return new ArrayList<>(items);
+        for (int slot = 0; slot < SIZE; slot++) {
+            lend(slot);
+        }
+        return new ArrayList<>(Arrays.asList(items));
     }
 
     public void clear() {
-        items.clear();
-        for (int i = 0; i < 36; i++) {
-            items.add(ItemStack.EMPTY);
-        }
+        Arrays.fill(items, ItemStack.EMPTY);
+        Arrays.fill(indexed, ItemStack.EMPTY);
+        lentSlots.clear();
+        itemCounts.clear();
+        tagCounts.clear();
+        partialStacks.clear();
+        freeSlots.set(0, SIZE);
         selectedSlot = 0;
+        savedTag = null;
+    }
+
+    public int getItemCount(Item item) {
+        revalidate();
+        return itemCounts.getInt(item);
+    }
+
+    public int getItemCount(TagKey<Item> tag) {
+        revalidate();
+        return tagCounts.getInt(tag);
     }
 
+    // Matches display names, so it still has to look at every occupied slot
     public int getItemCount(String itemName) {
+        revalidate();
         int count = 0;
-        for (ItemStack stack : items) {
-            if (!stack.isEmpty() && stack.getName().getString().contains(itemName)) {
+        for (int i = freeSlots.nextClearBit(0); i < SIZE; i = freeSlots.nextClearBit(i + 1)) {
+            ItemStack stack = items[i];
+            if (stack.getName().getString().contains(itemName)) {
                 count += stack.getCount();
             }
         }
         return count;
     }
 
+    public int getFreeSlotCount() {
+        revalidate();
+        return freeSlots.cardinality();
+    }
+
+    // True when the inventory changed since the last writeToNbt
+    public boolean isDirty() {
+        revalidate();
+        return savedTag == null;
+    }
+
+    /**
+     * Returns the NBT form of the inventory. While nothing changed it's a copy of the cached tag,
+     * so callers may add to it like to a freshly written one.
+     */
     public NbtCompound writeToNbt() {
+        revalidate();
+        if (savedTag != null) {
+            return savedTag.copy();
+        }
         NbtCompound tag = new NbtCompound();
-        tag.putInt("SelectedSlot", selectedSlot);
-        tag.putInt("Size", items.size());
-
-        for (int i = 0; i < items.size(); i++) {
-            ItemStack stack = items.get(i);
-            if (!stack.isEmpty()) {
-                NbtCompound itemTag = new NbtCompound();
-                stack.writeNbt(itemTag);
-                tag.put("Item" + i, itemTag);
-            }
+        tag.putByte("Version", (byte) NBT_VERSION);
+        tag.putByte("SelectedSlot", (byte) selectedSlot);
+
+        NbtList list = new NbtList();
+        for (int i = freeSlots.nextClearBit(0); i < SIZE; i = freeSlots.nextClearBit(i + 1)) {
+            NbtCompound itemTag = new NbtCompound();
+            items[i].writeNbt(itemTag);
+            itemTag.putByte("Slot", (byte) i);
+            list.add(itemTag);
         }
+        tag.put("Items", list);
 
-        return tag;
+        savedTag = tag;
+        return tag.copy();
     }
 
     public void readFromNbt(NbtCompound tag) {
         try {
             clear();
             selectedSlot = tag.getInt("SelectedSlot");
-            int size = tag.getInt("Size");
-
-            for (int i = 0; i < Math.min(size, 36); i++) {
-                if (tag.contains("Item" + i)) {
-                    ItemStack stack = ItemStack.fromNbt(tag.getCompound("Item" + i));
-                    if (!stack.isEmpty()) {
-                        items.set(i, stack);
-                    }
+            if (tag.getInt("Version") >= NBT_VERSION) {
+                NbtList list = tag.getList("Items", NbtElement.COMPOUND_TYPE);
+                for (int i = 0; i < list.size(); i++) {
+                    NbtCompound itemTag = list.getCompound(i);
+                    readSlot(itemTag.getByte("Slot") & 0xFF, itemTag);
                 }
+            } else {
+                readLegacy(tag);
             }
+            savedTag = null;
         } catch (Exception e) {
             LOGGER.error("Error reading inventory from NBT", e);
         }
     }
+
+    // Layout written before the Version tag: one "Item" + slot key per stack
+    private void readLegacy(NbtCompound tag) {
+        int size = Math.min(tag.getInt("Size"), SIZE);
+        for (String key : tag.getKeys()) {
+            if (!key.startsWith("Item")) {
+                continue;
+            }
+            try {
+                int slot = Integer.parseInt(key.substring(4));
+                if (slot < size) {
+                    readSlot(slot, tag.getCompound(key));
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring unexpected inventory key {}", key);
+            }
+        }
+    }
+
+    private void readSlot(int slot, NbtCompound itemTag) {
+        if (slot >= SIZE) {
+            return;
+        }
+        ItemStack stack = ItemStack.fromNbt(itemTag);
+        if (!stack.isEmpty()) {
+            // A fresh stack nobody else has, so the slot isn't lent
+            unindex(slot);
+            items[slot] = stack;
+            index(slot);
+        }
+    }
 }
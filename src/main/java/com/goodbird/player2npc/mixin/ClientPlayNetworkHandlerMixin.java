@@ -0,0 +1,24 @@
+package com.goodbird.player2npc.mixin;
+
+import com.goodbird.player2npc.network.AutomatonSpawnPacket;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.EntitiesDestroyS2CPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Tells {@link AutomatonSpawnPacket} about destroyed entities, including the ones it is still
+ * holding back until their character arrives.
+ */
+@Mixin(ClientPlayNetworkHandler.class)
+public abstract class ClientPlayNetworkHandlerMixin {
+
+    // TAIL: only reached on the client thread, HEAD also runs on the network thread before the
+    // packet is handed over
+    @Inject(method = "onEntitiesDestroy", at = @At("TAIL"))
+    private void player2npc$dropPendingSpawns(EntitiesDestroyS2CPacket packet, CallbackInfo ci) {
+        AutomatonSpawnPacket.onEntitiesDestroyed(packet.getEntityIds());
+    }
+}
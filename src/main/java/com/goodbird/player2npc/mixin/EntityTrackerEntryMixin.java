@@ -0,0 +1,44 @@
+package com.goodbird.player2npc.mixin;
+
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.network.EntityTrackerEntry;
+import org.objectweb.asm.Opcodes;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Lets companions decide how often their tracker entry syncs (see CompanionTrackingPolicy).
+ */
+@Mixin(EntityTrackerEntry.class)
+public abstract class EntityTrackerEntryMixin {
+    @Shadow
+    @Final
+    private Entity entity;
+    @Shadow
+    @Final
+    private int tickInterval;
+
+    // Only stretches the position/rotation/data sync interval: passenger changes and
+    // velocityModified (knockback) are still sent on the tick they happen
+    @Redirect(method = "tick", at = @At(value = "FIELD", target = "Lnet/minecraft/server/network/EntityTrackerEntry;tickInterval:I", opcode = Opcodes.GETFIELD, ordinal = 0))
+    private int player2npc$companionSyncInterval(EntityTrackerEntry entry) {
+        if (entity instanceof AutomatoneEntity companion) {
+            return companion.trackingPolicy.getInterval();
+        }
+        return tickInterval;
+    }
+
+    @Inject(method = "sendSyncPacket", at = @At("HEAD"))
+    private void player2npc$countCompanionBytes(Packet<?> packet, CallbackInfo ci) {
+        if (entity instanceof AutomatoneEntity companion) {
+            companion.trackingPolicy.recordSyncPacket(companion, packet);
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.goodbird.player2npc.network;
 
 import adris.altoclef.player2api.Character;
-import adris.altoclef.player2api.utils.CharacterUtils;
 import baritone.api.entity.LivingEntityInventory;
 import com.goodbird.player2npc.Player2NPC;
 import com.goodbird.player2npc.companion.AutomatoneEntity;
 import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntList;
 import net.fabricmc.fabric.api.networking.v1.FabricPacket;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.PacketType;
@@ -13,13 +13,17 @@ import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.world.ClientWorld;
-import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtList;
+import net.minecraft.item.ItemStack;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.Packet;
 import net.minecraft.util.math.Vec3d;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class AutomatonSpawnPacket implements FabricPacket {
@@ -35,9 +39,15 @@ public class AutomatonSpawnPacket implements FabricPacket {
     private final Vec3d velocity;
     private final float pitch;
     private final float yaw;
-    private final Character character;
+    // Only the owner's client asks for the full inventory, null for companions without one
+    private final UUID ownerUuid;
+    // Content hash of the character in the CharacterDictionary, 0 when the companion has none
+    private final long characterHash;
     private final LivingEntityInventory inventory;
 
+    // Spawn packets waiting for their character to be (re)defined, client side only
+    private static final Map<Long, List<AutomatonSpawnPacket>> PENDING = new HashMap<>();
+
     private AutomatonSpawnPacket(AutomatoneEntity entity) {
         this.id = entity.getId();
         this.uuid = entity.getUuid();
@@ -45,8 +55,9 @@ public class AutomatonSpawnPacket implements FabricPacket {
         this.velocity = entity.getVelocity();
         this.pitch = entity.getPitch();
         this.yaw = entity.getYaw();
+        this.ownerUuid = entity.getOwnerUuid();
 
-        this.character = entity.getCharacter();
+        this.characterHash = entity.getCharacter() != null ? entity.getCharacterHash() : 0L;
         this.inventory = entity.inventory;
     }
 
@@ -57,15 +68,16 @@ public class AutomatonSpawnPacket implements FabricPacket {
         this.velocity = new Vec3d(buf.readShort(), buf.readShort(), buf.readShort());
         this.pitch = (buf.readByte() * 360) / 256.0F;
         this.yaw = (buf.readByte() * 360) / 256.0F;
+        this.ownerUuid = buf.readBoolean() ? buf.readUuid() : null;
 
-        this.character = CharacterUtils.readFromBuf(buf);
-        this.inventory = new LivingEntityInventory(null);
-        this.inventory.readNbt(buf.readNbt().getList("inv", 10));
+        this.characterHash = buf.readLong();
+        this.inventory = readEquipment(buf);
     }
 
     public static Packet<ClientPlayPacketListener> create(AutomatoneEntity entity) {
         PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
         new AutomatonSpawnPacket(entity).write(buf);
+        entity.trackingPolicy.recordSpawnPacket(buf.readableBytes());
         return ServerPlayNetworking.createS2CPacket(Player2NPC.SPAWN_PACKET_ID, buf);
     }
 
@@ -81,11 +93,39 @@ public class AutomatonSpawnPacket implements FabricPacket {
         buf.writeShort((int) (Math.min(3.9, this.velocity.z) * 8000.0));
         buf.writeByte((byte) ((int) (this.pitch * 256.0F / 360.0F)));
         buf.writeByte((byte) ((int) (this.yaw * 256.0F / 360.0F)));
+        buf.writeBoolean(this.ownerUuid != null);
+        if (this.ownerUuid != null) {
+            buf.writeUuid(this.ownerUuid);
+        }
+
+        buf.writeLong(characterHash);
+        writeEquipment(buf, inventory);
+    }
+
+    // Only the visible equipment is sent on spawn, the owner's client asks for the rest of the
+    // inventory with an AutomatoneInventoryRequestPacket once the entity exists (see spawn)
+    private static void writeEquipment(PacketByteBuf buf, LivingEntityInventory inventory) {
+        buf.writeByte(inventory.selectedSlot);
+        buf.writeItemStack(inventory.getMainHandStack());
+        buf.writeItemStack(inventory.offHand.get(0));
+        for (int i = 0; i < inventory.armor.size(); i++) {
+            buf.writeItemStack(inventory.armor.get(i));
+        }
+    }
 
-        CharacterUtils.writeToBuf(buf, character);
-        NbtCompound compound = new NbtCompound();
-        compound.put("inv", inventory.writeNbt(new NbtList()));
-        buf.writeNbt(compound);
+    private static LivingEntityInventory readEquipment(PacketByteBuf buf) {
+        LivingEntityInventory inventory = new LivingEntityInventory(null);
+        int selectedSlot = buf.readByte();
+        ItemStack mainHand = buf.readItemStack();
+        if (LivingEntityInventory.isValidHotbarIndex(selectedSlot)) {
+            inventory.selectedSlot = selectedSlot;
+            inventory.main.set(selectedSlot, mainHand);
+        }
+        inventory.offHand.set(0, buf.readItemStack());
+        for (int i = 0; i < inventory.armor.size(); i++) {
+            inventory.armor.set(i, buf.readItemStack());
+        }
+        return inventory;
     }
 
     @Override
@@ -96,21 +136,84 @@ public class AutomatonSpawnPacket implements FabricPacket {
     public static void handle(MinecraftClient client, ClientPlayNetworkHandler var2, PacketByteBuf var3, PacketSender var4) {
         AutomatonSpawnPacket packet = new AutomatonSpawnPacket(var3);
         client.execute(() -> {
-            ClientWorld world = var2.getWorld();
-            AutomatoneEntity entity = new AutomatoneEntity(Player2NPC.AUTOMATONE, world);
-            entity.setId(packet.id);
-            entity.setUuid(packet.uuid);
-            entity.syncPacketPositionCodec(packet.pos.x, packet.pos.y, packet.pos.z);
-            entity.refreshPositionAfterTeleport(packet.pos.x, packet.pos.y, packet.pos.z);
-            entity.setVelocity(packet.velocity);
-            entity.setPitch(packet.pitch);
-            entity.setYaw(packet.yaw);
-
-            entity.setCharacter(packet.character);
-            packet.inventory.player = entity;
-            entity.inventory = packet.inventory;
-
-            world.addEntity(packet.id, entity);
+            if (packet.characterHash == 0L) {
+                packet.spawn(var2, null);
+                return;
+            }
+            Character character = CharacterDictionary.getClient().get(packet.characterHash);
+            if (character != null) {
+                packet.spawn(var2, character);
+            } else {
+                // The character fell out of our dictionary, ask for it again and spawn once it arrives
+                dropPending(packet.id); // A newer spawn of the same entity replaces the held one
+                List<AutomatonSpawnPacket> waiting = PENDING.computeIfAbsent(packet.characterHash, hash -> new ArrayList<>());
+                if (waiting.isEmpty()) {
+                    var2.sendPacket(CharacterRequestPacket.create(packet.characterHash));
+                }
+                waiting.add(packet);
+            }
         });
     }
-}
\ No newline at end of file
+
+    // Also called when the server doesn't know the character, the companions then spawn without one
+    static void onCharacterDefined(MinecraftClient client, ClientPlayNetworkHandler handler, long hash) {
+        List<AutomatonSpawnPacket> waiting = PENDING.remove(hash);
+        if (waiting != null) {
+            Character character = CharacterDictionary.getClient().get(hash);
+            waiting.forEach(packet -> packet.spawn(handler, character));
+        }
+    }
+
+    /**
+     * Client thread, after an entity destroy packet: forgets held spawns of those entities so
+     * they don't show up as ghosts once their character arrives.
+     */
+    public static void onEntitiesDestroyed(IntList ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            dropPending(ids.getInt(i));
+        }
+    }
+
+    private static void dropPending(int id) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        Iterator<List<AutomatonSpawnPacket>> lists = PENDING.values().iterator();
+        while (lists.hasNext()) {
+            List<AutomatonSpawnPacket> waiting = lists.next();
+            waiting.removeIf(packet -> packet.id == id);
+            if (waiting.isEmpty()) {
+                lists.remove();
+            }
+        }
+    }
+
+    public static void onClientDisconnect() {
+        PENDING.clear();
+        CharacterDictionary.resetClient();
+    }
+
+    private void spawn(ClientPlayNetworkHandler handler, Character character) {
+        ClientWorld world = handler.getWorld();
+        AutomatoneEntity entity = new AutomatoneEntity(Player2NPC.AUTOMATONE, world);
+        entity.setId(this.id);
+        entity.setUuid(this.uuid);
+        entity.syncPacketPositionCodec(this.pos.x, this.pos.y, this.pos.z);
+        entity.refreshPositionAfterTeleport(this.pos.x, this.pos.y, this.pos.z);
+        entity.setVelocity(this.velocity);
+        entity.setPitch(this.pitch);
+        entity.setYaw(this.yaw);
+
+        entity.setCharacter(character);
+        this.inventory.player = entity;
+        entity.inventory = this.inventory;
+
+        world.addEntity(this.id, entity);
+        // Asked here rather than pushed on start tracking: the spawn may wait for its character,
+        // and an inventory packet arriving before the entity exists would be dropped. The server
+        // only answers the owner, so other clients don't ask at all
+        if (this.ownerUuid != null && this.ownerUuid.equals(handler.getProfile().getId())) {
+            AutomatoneInventoryRequestPacket.send(entity);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.goodbird.player2npc.network;
 
 import adris.altoclef.player2api.Character;
-import adris.altoclef.player2api.utils.CharacterUtils;
 import com.goodbird.player2npc.Player2NPC;
 import com.goodbird.player2npc.companion.CompanionManager;
 import io.netty.buffer.Unpooled;
@@ -23,25 +22,26 @@ public class AutomatoneDespawnRequestPacket implements FabricPacket {
             AutomatonSpawnPacket::new
     );
 
-    private final Character character;
+    // Dismissal only needs the character name
+    private final String characterName;
 
-    private AutomatoneDespawnRequestPacket(Character character) {
-        this.character = character;
+    private AutomatoneDespawnRequestPacket(String characterName) {
+        this.characterName = characterName;
     }
 
     public AutomatoneDespawnRequestPacket(PacketByteBuf buf) {
-        this.character = CharacterUtils.readFromBuf(buf);
+        this.characterName = buf.readString();
     }
 
     public static Packet<ServerPlayPacketListener> create(Character character) {
         PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
-        new AutomatoneDespawnRequestPacket(character).write(buf);
+        new AutomatoneDespawnRequestPacket(character.name()).write(buf);
         return ClientPlayNetworking.createC2SPacket(Player2NPC.DESPAWN_REQUEST_PACKET_ID, buf);
     }
 
     @Override
     public void write(PacketByteBuf buf) {
-        CharacterUtils.writeToBuf(buf, character);
+        buf.writeString(characterName);
     }
 
     @Override
@@ -51,6 +51,6 @@ public class AutomatoneDespawnRequestPacket implements FabricPacket {
 
     public static void handle(MinecraftServer var1, ServerPlayerEntity var2, ServerPlayNetworkHandler var3, PacketByteBuf var4, PacketSender var5) {
         AutomatoneDespawnRequestPacket packet = new AutomatoneDespawnRequestPacket(var4);
-        var1.execute(() -> CompanionManager.KEY.get(var2).dismissCompanion(packet.character.name()));
+        var1.execute(() -> CompanionManager.KEY.get(var2).dismissCompanion(packet.characterName));
     }
 }
@@ -0,0 +1,128 @@
+package com.goodbird.player2npc.network;
+
+import com.goodbird.player2npc.Player2NPC;
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.entity.Entity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server to client: inventory slots of a companion.
+ * <p>
+ * Slots use the combined inventory index (0-35 main, 36-39 armor, 40 off hand). A full
+ * packet replaces the whole client copy and only lists the non-empty slots, a delta packet
+ * (see {@link InventoryDeltaTracker}) lists the slots that changed during the last tick.
+ */
+public class AutomatoneInventoryPacket implements FabricPacket {
+
+    public static final PacketType<AutomatoneInventoryPacket> TYPE = PacketType.create(
+            Player2NPC.INVENTORY_PACKET_ID,
+            AutomatoneInventoryPacket::new
+    );
+
+    private final int entityId;
+    private final int selectedSlot;
+    private final boolean full;
+    private final IntList slots;
+    private final List<ItemStack> stacks;
+
+    private AutomatoneInventoryPacket(int entityId, int selectedSlot, boolean full, IntList slots, List<ItemStack> stacks) {
+        this.entityId = entityId;
+        this.selectedSlot = selectedSlot;
+        this.full = full;
+        this.slots = slots;
+        this.stacks = stacks;
+    }
+
+    public AutomatoneInventoryPacket(PacketByteBuf buf) {
+        this.entityId = buf.readVarInt();
+        this.selectedSlot = buf.readByte();
+        this.full = buf.readBoolean();
+        int size = buf.readVarInt();
+        this.slots = new IntArrayList(size);
+        this.stacks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(buf.readVarInt());
+            stacks.add(buf.readItemStack());
+        }
+    }
+
+    public static Packet<ClientPlayPacketListener> createFull(AutomatoneEntity entity) {
+        IntList slots = new IntArrayList();
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int slot = 0; slot < entity.inventory.size(); slot++) {
+            ItemStack stack = entity.inventory.getStack(slot);
+            if (!stack.isEmpty()) {
+                slots.add(slot);
+                stacks.add(stack);
+            }
+        }
+        return create(new AutomatoneInventoryPacket(entity.getId(), entity.inventory.selectedSlot, true, slots, stacks));
+    }
+
+    public static Packet<ClientPlayPacketListener> createDelta(AutomatoneEntity entity, IntList changedSlots) {
+        IntList slots = new IntArrayList(changedSlots);
+        List<ItemStack> stacks = new ArrayList<>(slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            stacks.add(entity.inventory.getStack(slots.getInt(i)));
+        }
+        return create(new AutomatoneInventoryPacket(entity.getId(), entity.inventory.selectedSlot, false, slots, stacks));
+    }
+
+    private static Packet<ClientPlayPacketListener> create(AutomatoneInventoryPacket packet) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        packet.write(buf);
+        return ServerPlayNetworking.createS2CPacket(Player2NPC.INVENTORY_PACKET_ID, buf);
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeVarInt(entityId);
+        buf.writeByte(selectedSlot);
+        buf.writeBoolean(full);
+        buf.writeVarInt(slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            buf.writeVarInt(slots.getInt(i));
+            buf.writeItemStack(stacks.get(i));
+        }
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    public static void handle(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        AutomatoneInventoryPacket packet = new AutomatoneInventoryPacket(buf);
+        client.execute(() -> {
+            Entity entity = handler.getWorld().getEntityById(packet.entityId);
+            if (!(entity instanceof AutomatoneEntity companion) || companion.inventory == null) {
+                return;
+            }
+            if (packet.full) {
+                companion.inventory.clear();
+            }
+            for (int i = 0; i < packet.slots.size(); i++) {
+                int slot = packet.slots.getInt(i);
+                if (slot >= 0 && slot < companion.inventory.size()) {
+                    companion.inventory.setStack(slot, packet.stacks.get(i));
+                }
+            }
+            companion.inventory.selectedSlot = packet.selectedSlot;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.goodbird.player2npc.network;
+
+import com.goodbird.player2npc.Player2NPC;
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.ServerPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Client to server: asks for the full inventory of a companion, the spawn packet only carries
+ * its equipment. Only sent by the owner's client, and only the owner gets an answer.
+ */
+public class AutomatoneInventoryRequestPacket implements FabricPacket {
+
+    public static final PacketType<AutomatoneInventoryRequestPacket> TYPE = PacketType.create(
+            Player2NPC.INVENTORY_REQUEST_PACKET_ID,
+            AutomatoneInventoryRequestPacket::new
+    );
+
+    private final int entityId;
+
+    private AutomatoneInventoryRequestPacket(int entityId) {
+        this.entityId = entityId;
+    }
+
+    public AutomatoneInventoryRequestPacket(PacketByteBuf buf) {
+        this.entityId = buf.readVarInt();
+    }
+
+    public static Packet<ServerPlayPacketListener> create(int entityId) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        new AutomatoneInventoryRequestPacket(entityId).write(buf);
+        return ClientPlayNetworking.createC2SPacket(Player2NPC.INVENTORY_REQUEST_PACKET_ID, buf);
+    }
+
+    public static void send(AutomatoneEntity entity) {
+        ClientPlayNetworking.getSender().sendPacket(create(entity.getId()));
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeVarInt(entityId);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    public static void handle(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        AutomatoneInventoryRequestPacket packet = new AutomatoneInventoryRequestPacket(buf);
+        server.execute(() -> {
+            Entity entity = player.getServerWorld().getEntityById(packet.entityId);
+            // Only the owner sees the whole inventory, other players already got the equipment
+            // with the spawn packet (see InventoryDeltaTracker)
+            if (entity instanceof AutomatoneEntity companion && companion.canBeSpectated(player)
+                    && player.getUuid().equals(companion.getOwnerUuid())) {
+                sender.sendPacket(AutomatoneInventoryPacket.createFull(companion));
+            }
+        });
+    }
+}
@@ -34,6 +34,8 @@ public class AutomatoneSpawnRequestPacket implements FabricPacket {
         this.character = character;
     }
 
+    // Always carries the whole character: summons are rare, and the server's dictionary may
+    // have dropped a character the client still has
     public AutomatoneSpawnRequestPacket(PacketByteBuf buf) {
         this.character = CharacterUtils.readFromBuf(buf);
     }
@@ -0,0 +1,74 @@
+package com.goodbird.player2npc.network;
+
+import adris.altoclef.player2api.Character;
+import adris.altoclef.player2api.utils.CharacterUtils;
+import com.goodbird.player2npc.Player2NPC;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+
+/**
+ * Server to client: defines a character of the {@link CharacterDictionary} once per connection.
+ * Carries no character when the server couldn't answer a {@link CharacterRequestPacket}.
+ */
+public class CharacterDefinePacket implements FabricPacket {
+
+    public static final PacketType<CharacterDefinePacket> TYPE = PacketType.create(
+            Player2NPC.CHARACTER_DEFINE_PACKET_ID,
+            CharacterDefinePacket::new
+    );
+
+    private final long hash;
+    // Null when the server doesn't know the hash
+    private final Character character;
+
+    private CharacterDefinePacket(long hash, Character character) {
+        this.hash = hash;
+        this.character = character;
+    }
+
+    public CharacterDefinePacket(PacketByteBuf buf) {
+        this.hash = buf.readLong();
+        this.character = buf.readBoolean() ? CharacterUtils.readFromBuf(buf) : null;
+    }
+
+    public static Packet<ClientPlayPacketListener> create(long hash, Character character) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        new CharacterDefinePacket(hash, character).write(buf);
+        return ServerPlayNetworking.createS2CPacket(Player2NPC.CHARACTER_DEFINE_PACKET_ID, buf);
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeLong(hash);
+        buf.writeBoolean(character != null);
+        if (character != null) {
+            CharacterUtils.writeToBuf(buf, character);
+        }
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    public static void handle(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        CharacterDefinePacket packet = new CharacterDefinePacket(buf);
+        client.execute(() -> {
+            if (packet.character != null) {
+                CharacterDictionary.getClient().put(packet.hash, packet.character);
+            } else {
+                Player2NPC.LOGGER.warn("Server doesn't know character {}, spawning its companions without one",
+                        Long.toHexString(packet.hash));
+            }
+            AutomatonSpawnPacket.onCharacterDefined(client, handler, packet.hash);
+        });
+    }
+}
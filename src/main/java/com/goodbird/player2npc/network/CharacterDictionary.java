@@ -0,0 +1,115 @@
+package com.goodbird.player2npc.network;
+
+import adris.altoclef.player2api.Character;
+import adris.altoclef.player2api.utils.CharacterUtils;
+import com.goodbird.player2npc.companion.CharacterTable;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-hashed dictionary of {@link Character}s shared between the server and a client.
+ * <p>
+ * The server sends every character once per connection ({@link CharacterDefinePacket}) and
+ * afterwards refers to it by its 64-bit content hash. Both sides keep an LRU of the same
+ * capacity that is touched in the same order (server when a companion starts being tracked,
+ * client when the matching spawn packet arrives), so the server's view of what the client
+ * knows stays in step. If the client misses a character anyway it asks for it again with a
+ * {@link CharacterRequestPacket}.
+ */
+public class CharacterDictionary {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int CAPACITY = 256;
+    // Every character the server has referenced by hash, used to answer requests
+    private static final int KNOWN_CAPACITY = 4096;
+
+    private static final Map<UUID, CharacterDictionary> SENT = new ConcurrentHashMap<>();
+    private static final CharacterDictionary KNOWN = new CharacterDictionary(KNOWN_CAPACITY);
+    private static CharacterDictionary client = new CharacterDictionary(CAPACITY);
+
+    private final LinkedHashMap<Long, Character> _entries;
+
+    private CharacterDictionary(int capacity) {
+        this._entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Character> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized Character get(long hash) {
+        return _entries.get(hash);
+    }
+
+    public synchronized void put(long hash, Character character) {
+        _entries.put(hash, character);
+    }
+
+    public static long hash(Character character) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        try {
+            CharacterUtils.writeToBuf(buf, character);
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return Hashing.murmur3_128().hashBytes(bytes).asLong();
+        } finally {
+            buf.release();
+        }
+    }
+
+    // Server side
+
+    /**
+     * Makes sure the player's client knows the character before a packet refers to it by hash.
+     */
+    public static void ensureSent(ServerPlayerEntity player, Character character, long hash) {
+        CharacterDictionary sent = SENT.computeIfAbsent(player.getUuid(), uuid -> new CharacterDictionary(CAPACITY));
+        KNOWN.put(hash, character);
+        if (sent.get(hash) == null) {
+            sent.put(hash, character);
+            player.networkHandler.sendPacket(CharacterDefinePacket.create(hash, character));
+        }
+    }
+
+    /**
+     * Answers a client that lost a character from its LRU. Falls back to the saved
+     * {@link CharacterTable} when KNOWN dropped it, and answers without a character when both
+     * miss so the client doesn't hold the spawn forever.
+     */
+    public static void resend(ServerPlayerEntity player, long hash) {
+        Character character = KNOWN.get(hash);
+        if (character == null) {
+            character = CharacterTable.get(player.getServer()).get(hash);
+        }
+        if (character != null) {
+            KNOWN.put(hash, character);
+            SENT.computeIfAbsent(player.getUuid(), uuid -> new CharacterDictionary(CAPACITY)).put(hash, character);
+        } else {
+            LOGGER.warn("{} asked for unknown character {}", player.getName().getString(), Long.toHexString(hash));
+        }
+        player.networkHandler.sendPacket(CharacterDefinePacket.create(hash, character));
+    }
+
+    public static void onDisconnect(ServerPlayerEntity player) {
+        SENT.remove(player.getUuid());
+    }
+
+    // Client side
+
+    public static CharacterDictionary getClient() {
+        return client;
+    }
+
+    public static void resetClient() {
+        client = new CharacterDictionary(CAPACITY);
+    }
+}
@@ -0,0 +1,56 @@
+package com.goodbird.player2npc.network;
+
+import com.goodbird.player2npc.Player2NPC;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.FabricPacket;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PacketType;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.listener.ServerPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Client to server: asks again for a character the client no longer has in its {@link CharacterDictionary}.
+ */
+public class CharacterRequestPacket implements FabricPacket {
+
+    public static final PacketType<CharacterRequestPacket> TYPE = PacketType.create(
+            Player2NPC.CHARACTER_REQUEST_PACKET_ID,
+            CharacterRequestPacket::new
+    );
+
+    private final long hash;
+
+    private CharacterRequestPacket(long hash) {
+        this.hash = hash;
+    }
+
+    public CharacterRequestPacket(PacketByteBuf buf) {
+        this.hash = buf.readLong();
+    }
+
+    public static Packet<ServerPlayPacketListener> create(long hash) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        new CharacterRequestPacket(hash).write(buf);
+        return ClientPlayNetworking.createC2SPacket(Player2NPC.CHARACTER_REQUEST_PACKET_ID, buf);
+    }
+
+    @Override
+    public void write(PacketByteBuf buf) {
+        buf.writeLong(hash);
+    }
+
+    @Override
+    public PacketType<?> getType() {
+        return TYPE;
+    }
+
+    public static void handle(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler, PacketByteBuf buf, PacketSender sender) {
+        CharacterRequestPacket packet = new CharacterRequestPacket(buf);
+        server.execute(() -> CharacterDictionary.resend(player, packet.hash));
+    }
+}
@@ -0,0 +1,161 @@
+package com.goodbird.player2npc.network;
+
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import com.goodbird.player2npc.companion.CompanionTickLod;
+import com.goodbird.player2npc.config.ConfigManager;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Adaptive entity tracking for a single companion (server side).
+ * <p>
+ * The companion entity type asks for a sync every tick, but the tracker entry uses
+ * {@link #getInterval} instead for its position, rotation and data sync: every tick close
+ * to a player, less often further away, and rarely while the companion is standing still.
+ * Data tracker changes and velocity changes above a threshold are always sent right away,
+ * as are passenger changes and knockback. Velocity is no longer force-synced every tick,
+ * the policy marks it dirty only when it changed.
+ * <p>
+ * Outbound bytes are counted per companion so the savings can be measured.
+ */
+public class CompanionTrackingPolicy {
+    // How often the sync interval is re-evaluated
+    private static final int EVALUATE_INTERVAL = 10;
+    // Ticks without moving before a companion counts as stationary
+    private static final int STATIONARY_TICKS = 20;
+    private static final int STATIONARY_INTERVAL = 20;
+    private static final double STATIONARY_EPSILON_SQ = 1.0E-4;
+
+    // Shared encode buffer for byte counting, only used on the server thread
+    private static final PacketByteBuf COUNTING_BUFFER = new PacketByteBuf(Unpooled.buffer(256));
+
+    private int _interval = 1;
+    private int _nextEvaluation = 0;
+    private int _stationaryTicks = 0;
+    private Vec3d _lastPos = Vec3d.ZERO;
+    private Vec3d _lastSentVelocity = Vec3d.ZERO;
+
+    private long _syncPackets = 0;
+    private long _syncBytes = 0;
+    private long _spawnPackets = 0;
+    private long _spawnBytes = 0;
+
+    /**
+     * Called at the end of every server tick of the companion.
+     */
+    public void update(AutomatoneEntity entity) {
+        if (!ConfigManager.isAdaptiveTrackingEnabled()) {
+            _interval = 1;
+            entity.velocityDirty = true;
+            return;
+        }
+
+        Vec3d pos = entity.getPos();
+        if (pos.squaredDistanceTo(_lastPos) < STATIONARY_EPSILON_SQ) {
+            _stationaryTicks++;
+        } else {
+            _stationaryTicks = 0;
+            _lastPos = pos;
+        }
+
+        Vec3d velocity = entity.getVelocity();
+        double threshold = ConfigManager.getTrackingVelocityThreshold();
+        if (velocity.squaredDistanceTo(_lastSentVelocity) > threshold * threshold) {
+            entity.velocityDirty = true;
+            _lastSentVelocity = velocity;
+        }
+
+        if (entity.age >= _nextEvaluation) {
+            _nextEvaluation = entity.age + EVALUATE_INTERVAL;
+            _interval = computeInterval(entity);
+        }
+    }
+
+    private int computeInterval(AutomatoneEntity entity) {
+        if (entity.hurtTime > 0) {
+            return 1;
+        }
+        if (_stationaryTicks >= STATIONARY_TICKS) {
+            return STATIONARY_INTERVAL;
+        }
+        double distanceSq = CompanionTickLod.nearestPlayerDistanceSq(entity);
+        if (distanceSq == Double.MAX_VALUE) {
+            return ConfigManager.getTrackingFarInterval();
+        }
+        double near = ConfigManager.getTrackingNearDistance();
+        double mid = ConfigManager.getTrackingMidDistance();
+        if (distanceSq <= near * near) {
+            return 1;
+        }
+        if (distanceSq <= mid * mid) {
+            return ConfigManager.getTrackingMidInterval();
+        }
+        return ConfigManager.getTrackingFarInterval();
+    }
+
+    /**
+     * Tracking range: the configured range, vanilla already clamps it to the view distance.
+     * Dormant companions are only tracked at half that range.
+     */
+    public int getTrackingRange(AutomatoneEntity entity) {
+        int range = ConfigManager.getCompanionRenderRange();
+        if (ConfigManager.isAdaptiveTrackingEnabled() && entity.isDormant()) {
+            range /= 2;
+        }
+        return range;
+    }
+
+    public void recordSyncPacket(AutomatoneEntity entity, Packet<?> packet) {
+        if (!ConfigManager.isNetworkStatsEnabled()) {
+            return;
+        }
+        int viewers = PlayerLookup.tracking(entity).size();
+        _syncPackets += viewers;
+        _syncBytes += (long) measure(packet) * viewers;
+    }
+
+    public void recordSpawnPacket(int bytes) {
+        _spawnPackets++;
+        _spawnBytes += bytes;
+    }
+
+    private static int measure(Packet<?> packet) {
+        COUNTING_BUFFER.clear();
+        try {
+            packet.write(COUNTING_BUFFER);
+            return COUNTING_BUFFER.readableBytes();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Ticks between two position/rotation syncs, read by the tracker entry every tick.
+     */
+    public int getInterval() {
+        return _interval;
+    }
+
+    public long getSyncPackets() {
+        return _syncPackets;
+    }
+
+    public long getSyncBytes() {
+        return _syncBytes;
+    }
+
+    public long getSpawnPackets() {
+        return _spawnPackets;
+    }
+
+    public long getSpawnBytes() {
+        return _spawnBytes;
+    }
+
+    public long getTotalBytes() {
+        return _syncBytes + _spawnBytes;
+    }
+}
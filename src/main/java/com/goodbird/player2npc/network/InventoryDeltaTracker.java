@@ -0,0 +1,131 @@
+package com.goodbird.player2npc.network;
+
+import baritone.api.entity.LivingEntityInventory;
+import com.goodbird.player2npc.companion.AutomatoneEntity;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.Collection;
+
+/**
+ * Watches the inventory of a companion (server side) and sends the changed slots to the
+ * players tracking it.
+ * <p>
+ * The tracker keeps a copy of every slot as last sent. Slots are only compared when the
+ * inventory's change count or selected slot moved, plus a periodic full comparison for stacks
+ * that are mutated in place (damage, count) without bumping the change count. All changes of
+ * a tick go out in one packet.
+ * <p>
+ * Only the owner gets the whole inventory. Other trackers only get the slots they can see on
+ * the model: armor, off hand and the selected hotbar slot.
+ */
+public class InventoryDeltaTracker {
+    // Ticks between two comparisons that don't wait for the change count
+    private static final int FORCED_DIFF_INTERVAL = 20;
+
+    private ItemStack[] _sent = new ItemStack[0];
+    private int _changeCount = -1;
+    private int _selectedSlot = -1;
+    private int _nextForcedDiff = 0;
+    private final IntList _changed = new IntArrayList();
+    private final IntList _visible = new IntArrayList();
+
+    /**
+     * Called at the end of every server tick of the companion.
+     */
+    public void update(AutomatoneEntity entity) {
+        LivingEntityInventory inventory = entity.inventory;
+        if (inventory == null) {
+            return;
+        }
+        if (_sent.length != inventory.size()) {
+            // First update: the spawn packet already carries the current equipment
+            snapshot(inventory);
+            return;
+        }
+        boolean forced = entity.age >= _nextForcedDiff;
+        if (!forced && inventory.getChangeCount() == _changeCount && inventory.selectedSlot == _selectedSlot) {
+            return;
+        }
+        if (forced) {
+            _nextForcedDiff = entity.age + FORCED_DIFF_INTERVAL;
+        }
+        _changeCount = inventory.getChangeCount();
+
+        _changed.clear();
+        for (int slot = 0; slot < _sent.length; slot++) {
+            ItemStack stack = inventory.getStack(slot);
+            if (!ItemStack.areEqual(stack, _sent[slot])) {
+                _sent[slot] = stack.copy();
+                _changed.add(slot);
+            }
+        }
+        boolean selectionChanged = inventory.selectedSlot != _selectedSlot;
+        _selectedSlot = inventory.selectedSlot;
+        if (_changed.isEmpty() && !selectionChanged) {
+            return;
+        }
+
+        Collection<ServerPlayerEntity> trackers = PlayerLookup.tracking(entity);
+        if (trackers.isEmpty()) {
+            return;
+        }
+        collectVisible(inventory, selectionChanged);
+        Packet<ClientPlayPacketListener> ownerPacket = null;
+        Packet<ClientPlayPacketListener> visiblePacket = null;
+        for (ServerPlayerEntity player : trackers) {
+            Packet<ClientPlayPacketListener> packet;
+            if (player.getUuid().equals(entity.getOwnerUuid())) {
+                if (ownerPacket == null) {
+                    ownerPacket = AutomatoneInventoryPacket.createDelta(entity, _changed);
+                    entity.trackingPolicy.recordSyncPacket(entity, ownerPacket);
+                }
+                packet = ownerPacket;
+            } else {
+                if (_visible.isEmpty()) {
+                    continue;
+                }
+                if (visiblePacket == null) {
+                    visiblePacket = AutomatoneInventoryPacket.createDelta(entity, _visible);
+                    entity.trackingPolicy.recordSyncPacket(entity, visiblePacket);
+                }
+                packet = visiblePacket;
+            }
+            ServerPlayNetworking.getSender(player).sendPacket(packet);
+        }
+    }
+
+    // Changed slots other players can see, plus the new main hand stack when the selection moved
+    private void collectVisible(LivingEntityInventory inventory, boolean selectionChanged) {
+        _visible.clear();
+        for (int i = 0; i < _changed.size(); i++) {
+            int slot = _changed.getInt(i);
+            if (isVisible(inventory, slot)) {
+                _visible.add(slot);
+            }
+        }
+        if (selectionChanged && !_visible.contains(inventory.selectedSlot)) {
+            _visible.add(inventory.selectedSlot);
+        }
+    }
+
+    // Armor, off hand and the selected hotbar slot are drawn on the model, using the combined index
+    private static boolean isVisible(LivingEntityInventory inventory, int slot) {
+        return slot >= inventory.main.size() || slot == inventory.selectedSlot;
+    }
+
+    private void snapshot(LivingEntityInventory inventory) {
+        _sent = new ItemStack[inventory.size()];
+        for (int slot = 0; slot < _sent.length; slot++) {
+            _sent[slot] = inventory.getStack(slot).copy();
+        }
+        _changeCount = inventory.getChangeCount();
+        _selectedSlot = inventory.selectedSlot;
+    }
+}
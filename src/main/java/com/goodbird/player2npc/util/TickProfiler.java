@@ -0,0 +1,181 @@
+package com.goodbird.player2npc.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low overhead nanosecond counters for the companion tick phases.
+ * <p>
+ * Recording is allocation-free: totals are kept in striped atomic counters (one stripe per
+ * thread bucket, padded to a cache line) and the latest samples of every phase are kept in
+ * a fixed ring buffer used for percentiles. When disabled, {@link #start()} returns 0 and
+ * {@link #end} returns immediately.
+ */
+public final class TickProfiler {
+
+    public enum Phase {
+        ENTITY_TICK("AutomatoneEntity.tick"),
+        CONTROLLER_TICK("AltoClefController.serverTick"),
+        TICK_MOVEMENT("AutomatoneEntity.tickMovement"),
+        PICKUP_ITEMS("AutomatoneEntity.pickupItems"),
+        SPAWN_QUEUE("CompanionSpawnQueue.tick"),
+        STATIC_SERVER_TICK("AltoClefController.staticServerTick");
+
+        public final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+    // Longs per stripe: sum, count, max + padding up to a 64 byte cache line
+    private static final int PAD = 8;
+    private static final int WINDOW = 1024;
+
+    private static final AtomicLongArray COUNTERS = new AtomicLongArray(PHASES.length * STRIPES * PAD);
+    private static final long[][] SAMPLES = new long[PHASES.length][WINDOW];
+    private static final AtomicLongArray CURSORS = new AtomicLongArray(PHASES.length * PAD);
+
+    private static volatile boolean enabled = false;
+    private static volatile int generation = 0;
+    private static volatile long windowStart = System.nanoTime();
+
+    private TickProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        if (value && !enabled) {
+            reset();
+        }
+        enabled = value;
+    }
+
+    public static void reset() {
+        for (int i = 0; i < COUNTERS.length(); i++) {
+            COUNTERS.set(i, 0L);
+        }
+        for (int i = 0; i < CURSORS.length(); i++) {
+            CURSORS.set(i, 0L);
+        }
+        generation++;
+        windowStart = System.nanoTime();
+    }
+
+    public static long getWindowNanos() {
+        return System.nanoTime() - windowStart;
+    }
+
+    public static int getGeneration() {
+        return generation;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void end(Phase phase, long start) {
+        if (start != 0L) {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Ends a phase and also charges the time to the given companion.
+     */
+    public static void end(Phase phase, long start, CompanionStats stats) {
+        if (start != 0L) {
+            long nanos = System.nanoTime() - start;
+            record(phase, nanos);
+            stats.record(nanos);
+        }
+    }
+
+    private static void record(Phase phase, long nanos) {
+        int base = (phase.ordinal() * STRIPES + ((int) Thread.currentThread().getId() & (STRIPES - 1))) * PAD;
+        COUNTERS.addAndGet(base, nanos);
+        COUNTERS.incrementAndGet(base + 1);
+        long max;
+        while (nanos > (max = COUNTERS.get(base + 2)) && !COUNTERS.compareAndSet(base + 2, max, nanos)) {
+            Thread.onSpinWait();
+        }
+        int slot = (int) (CURSORS.getAndIncrement(phase.ordinal() * PAD) & (WINDOW - 1));
+        SAMPLES[phase.ordinal()][slot] = nanos;
+    }
+
+    public static PhaseSummary summarize(Phase phase) {
+        long sum = 0;
+        long count = 0;
+        long max = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            int base = (phase.ordinal() * STRIPES + stripe) * PAD;
+            sum += COUNTERS.get(base);
+            count += COUNTERS.get(base + 1);
+            max = Math.max(max, COUNTERS.get(base + 2));
+        }
+        int samples = (int) Math.min(CURSORS.get(phase.ordinal() * PAD), WINDOW);
+        return new PhaseSummary(phase, count, count == 0 ? 0 : sum / count,
+                percentile(SAMPLES[phase.ordinal()], samples, 0.99), max, sum);
+    }
+
+    static long percentile(long[] samples, int size, double quantile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return sorted[Math.min(size - 1, (int) Math.ceil(quantile * size) - 1)];
+    }
+
+    public record PhaseSummary(Phase phase, long count, long meanNanos, long p99Nanos, long maxNanos, long totalNanos) {
+    }
+
+    /**
+     * Per-companion tick cost, owned by the companion and reset lazily when a new
+     * sampling window starts.
+     */
+    public static final class CompanionStats {
+        private static final int COMPANION_WINDOW = 128;
+
+        private final long[] samples = new long[COMPANION_WINDOW];
+        private int generation = -1;
+        private long count;
+        private long total;
+
+        private void record(long nanos) {
+            int current = TickProfiler.generation;
+            if (generation != current) {
+                generation = current;
+                count = 0;
+                total = 0;
+            }
+            samples[(int) (count++ & (COMPANION_WINDOW - 1))] = nanos;
+            total += nanos;
+        }
+
+        public boolean isCurrent() {
+            return generation == TickProfiler.generation && count > 0;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return total;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        public long getP99Nanos() {
+            return percentile(samples, (int) Math.min(count, COMPANION_WINDOW), 0.99);
+        }
+    }
+}
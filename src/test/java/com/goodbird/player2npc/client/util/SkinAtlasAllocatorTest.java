@@ -0,0 +1,183 @@
+package com.goodbird.player2npc.client.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SkinAtlasAllocatorTest {
+    private static final int PAGE = 256;
+    private static final int CELL = 16;
+
+    @Test
+    void roundsSizesUpToPowerOfTwoCells() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 4);
+        assertEquals(16, allocator.allocate(1).getSize());
+        assertEquals(16, allocator.allocate(16).getSize());
+        assertEquals(32, allocator.allocate(17).getSize());
+        assertEquals(64, allocator.allocate(64).getSize());
+        assertEquals(128, allocator.allocate(65).getSize());
+        assertEquals(256, allocator.allocate(256).getSize());
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new SkinAtlasAllocator(PAGE, 24, 1));
+        assertThrows(IllegalArgumentException.class, () -> new SkinAtlasAllocator(300, CELL, 1));
+        assertThrows(IllegalArgumentException.class, () -> new SkinAtlasAllocator(CELL, PAGE, 1));
+
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 1);
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(0));
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(PAGE + 1));
+    }
+
+    @Test
+    void placesTopLeftFirst() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 1);
+        assertAt(allocator.allocate(64), 0, 0, 0);
+        assertAt(allocator.allocate(64), 0, 64, 0);
+        assertAt(allocator.allocate(64), 0, 0, 64);
+        assertAt(allocator.allocate(64), 0, 64, 64);
+        assertAt(allocator.allocate(64), 0, 128, 0);
+    }
+
+    @Test
+    void freedSiblingsCoalesce() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 2);
+        List<SkinAtlasAllocator.Allocation> quadrants = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            quadrants.add(allocator.allocate(128));
+        }
+        // The first page is full, so this one opens a second page
+        assertAt(allocator.allocate(128), 1, 0, 0);
+
+        quadrants.forEach(allocator::free);
+        assertAt(allocator.allocate(PAGE), 0, 0, 0);
+    }
+
+    @Test
+    void partlyFreedBlockDoesNotCoalesce() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 1);
+        List<SkinAtlasAllocator.Allocation> quadrants = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            quadrants.add(allocator.allocate(128));
+        }
+        allocator.free(quadrants.get(1));
+        allocator.free(quadrants.get(2));
+
+        assertNull(allocator.allocate(PAGE));
+        assertAt(allocator.allocate(128), 0, 128, 0);
+        assertAt(allocator.allocate(64), 0, 0, 128);
+    }
+
+    @Test
+    void returnsNullWhenOutOfSpace() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 1);
+        assertNotNull(allocator.allocate(PAGE));
+        assertNull(allocator.allocate(1));
+        assertEquals(1, allocator.getPageCount());
+        assertEquals(1, allocator.getLiveCount());
+        assertFalse(allocator.fitsAfterDefragment(1));
+    }
+
+    @Test
+    void freeingTwiceIsIgnored() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 1);
+        SkinAtlasAllocator.Allocation kept = allocator.allocate(64);
+        SkinAtlasAllocator.Allocation freed = allocator.allocate(64);
+        allocator.free(freed);
+        allocator.free(freed);
+
+        assertEquals(64L * 64, allocator.getUsedArea());
+        assertEquals(1, allocator.getLiveCount());
+        // The freed block must not be handed out twice
+        assertAt(allocator.allocate(64), 0, 64, 0);
+        assertAt(allocator.allocate(64), 0, 0, 64);
+        assertAt(kept, 0, 0, 0);
+    }
+
+    @Test
+    void defragmentPacksIntoTheLowestPages() {
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 2);
+        List<SkinAtlasAllocator.Allocation> blocks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            blocks.add(allocator.allocate(128));
+        }
+        allocator.free(blocks.get(1));
+        allocator.free(blocks.get(2));
+
+        // Enough area in total, but no free page for a full page block
+        assertNull(allocator.allocate(PAGE));
+        assertTrue(allocator.fitsAfterDefragment(PAGE));
+
+        List<SkinAtlasAllocator.Move> moves = allocator.defragment();
+        assertEquals(2, moves.size());
+        assertEquals(blocks.get(3), moves.get(0).allocation());
+        assertEquals(blocks.get(4), moves.get(1).allocation());
+        assertEquals(1, moves.get(1).fromPage());
+        assertEquals(1, allocator.getPageCount());
+        assertAt(blocks.get(0), 0, 0, 0);
+        assertAt(blocks.get(3), 0, 128, 0);
+        assertAt(blocks.get(4), 0, 0, 128);
+
+        assertAt(allocator.allocate(PAGE), 1, 0, 0);
+    }
+
+    @Test
+    void randomAllocationsNeverOverlap() {
+        Random random = new Random(42);
+        SkinAtlasAllocator allocator = new SkinAtlasAllocator(PAGE, CELL, 3);
+        List<SkinAtlasAllocator.Allocation> live = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            SkinAtlasAllocator.Allocation allocation;
+            while ((allocation = allocator.allocate(1 + random.nextInt(96))) != null) {
+                live.add(allocation);
+            }
+            assertNoOverlap(live);
+            for (int i = live.size() - 1; i >= 0; i--) {
+                if (random.nextBoolean()) {
+                    allocator.free(live.remove(i));
+                }
+            }
+            if (round % 5 == 4) {
+                allocator.defragment();
+                assertNoOverlap(live);
+            }
+        }
+        long area = 0;
+        for (SkinAtlasAllocator.Allocation allocation : live) {
+            area += (long) allocation.getSize() * allocation.getSize();
+        }
+        assertEquals(area, allocator.getUsedArea());
+        assertEquals(live.size(), allocator.getLiveCount());
+    }
+
+    private static void assertAt(SkinAtlasAllocator.Allocation allocation, int page, int x, int y) {
+        assertNotNull(allocation);
+        assertEquals(page, allocation.getPage());
+        assertEquals(x, allocation.getX());
+        assertEquals(y, allocation.getY());
+    }
+
+    private static void assertNoOverlap(List<SkinAtlasAllocator.Allocation> allocations) {
+        for (int i = 0; i < allocations.size(); i++) {
+            SkinAtlasAllocator.Allocation a = allocations.get(i);
+            assertTrue(a.getX() >= 0 && a.getY() >= 0 && a.getX() + a.getSize() <= PAGE && a.getY() + a.getSize() <= PAGE);
+            for (int j = i + 1; j < allocations.size(); j++) {
+                SkinAtlasAllocator.Allocation b = allocations.get(j);
+                boolean overlap = a.getPage() == b.getPage()
+                        && a.getX() < b.getX() + b.getSize() && b.getX() < a.getX() + a.getSize()
+                        && a.getY() < b.getY() + b.getSize() && b.getY() < a.getY() + a.getSize();
+                assertFalse(overlap);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.goodbird.player2npc.client.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link SkinDownloader} against a local HTTP server.
+ */
+class SkinDownloaderTest {
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final List<String> hits = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> failuresLeft = new ConcurrentHashMap<>();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        gate.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.add(path);
+        try {
+            gate.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        AtomicInteger failures = failuresLeft.get(path);
+        if (failures != null && failures.getAndDecrement() > 0) {
+            exchange.sendResponseHeaders(503, -1);
+        } else if (path.startsWith("/missing")) {
+            exchange.sendResponseHeaders(404, -1);
+        } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+        } else if (path.startsWith("/huge")) {
+            // Chunked, no Content-Length
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                byte[] chunk = new byte[64 * 1024];
+                for (int i = 0; i < 64; i++) {
+                    out.write(chunk);
+                }
+            } catch (IOException ignored) {
+                // The client hung up once it had enough
+            }
+        } else {
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.sendResponseHeaders(200, PNG.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PNG);
+            }
+        }
+        exchange.close();
+    }
+
+    private SkinDownloader downloader(int maxConcurrent) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return new SkinDownloader(client, maxConcurrent, 3, 10, Duration.ofSeconds(5));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static SkinDownloader.Result await(CompletableFuture<SkinDownloader.Result> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void downloadsToTarget() throws Exception {
+        Path target = dir.resolve("skin.png");
+        SkinDownloader.Result result = await(downloader(2).download(url("/skin"), target, SkinDownloader.Priority.VISIBLE));
+
+        assertEquals(SkinDownloader.Status.DOWNLOADED, result.status());
+        assertEquals(ETAG, result.etag());
+        assertArrayEquals(PNG, Files.readAllBytes(target));
+        assertFalse(Files.exists(dir.resolve("skin.png.part")));
+    }
+
+    @Test
+    void conditionalRequestGetsNotModified() throws Exception {
+        Path target = dir.resolve("skin.png");
+        SkinDownloader.Result result = await(downloader(2).download(url("/skin"), target,
+                SkinDownloader.Priority.BACKGROUND, ETAG, null));
+
+        assertEquals(SkinDownloader.Status.NOT_MODIFIED, result.status());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void missingSkinIsNotRetried() throws Exception {
+        SkinDownloader downloader = downloader(2);
+        SkinDownloader.Result result = await(downloader.download(url("/missing"), dir.resolve("skin.png"), SkinDownloader.Priority.VISIBLE));
+
+        assertEquals(SkinDownloader.Status.MISSING, result.status());
+        assertEquals(1, hits.size());
+        assertEquals(0, downloader.getRetries());
+    }
+
+    @Test
+    void serverErrorsAreRetried() throws Exception {
+        failuresLeft.put("/flaky", new AtomicInteger(2));
+        SkinDownloader downloader = downloader(2);
+        SkinDownloader.Result result = await(downloader.download(url("/flaky"), dir.resolve("skin.png"), SkinDownloader.Priority.VISIBLE));
+
+        assertEquals(SkinDownloader.Status.DOWNLOADED, result.status());
+        assertEquals(3, hits.size());
+        assertEquals(2, downloader.getRetries());
+    }
+
+    @Test
+    void givesUpAfterLastAttempt() throws Exception {
+        failuresLeft.put("/down", new AtomicInteger(10));
+        CompletableFuture<SkinDownloader.Result> future = downloader(2).download(url("/down"), dir.resolve("skin.png"), SkinDownloader.Priority.VISIBLE);
+
+        assertTrue(future.handle((result, error) -> error != null).get(10, TimeUnit.SECONDS));
+        assertEquals(3, hits.size());
+    }
+
+    @Test
+    void oversizedChunkedBodyIsAborted() throws Exception {
+        Path target = dir.resolve("skin.png");
+        SkinDownloader.Result result = await(downloader(2).download(url("/huge"), target, SkinDownloader.Priority.VISIBLE));
+
+        assertEquals(SkinDownloader.Status.MISSING, result.status());
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(dir.resolve("skin.png.part")));
+    }
+
+    @Test
+    void identicalRequestsAreMerged() throws Exception {
+        gate = new CountDownLatch(1);
+        SkinDownloader downloader = downloader(2);
+        Path target = dir.resolve("skin.png");
+        CompletableFuture<SkinDownloader.Result> first = downloader.download(url("/skin"), target, SkinDownloader.Priority.BACKGROUND);
+        CompletableFuture<SkinDownloader.Result> second = downloader.download(url("/skin"), target, SkinDownloader.Priority.VISIBLE);
+        // Different validators mean a different request, so no merge
+        CompletableFuture<SkinDownloader.Result> conditional = downloader.download(url("/skin"), target,
+                SkinDownloader.Priority.VISIBLE, ETAG, null);
+        gate.countDown();
+
+        assertSame(first, second);
+        assertNotSame(first, conditional);
+        assertEquals(SkinDownloader.Status.DOWNLOADED, await(first).status());
+        assertEquals(SkinDownloader.Status.NOT_MODIFIED, await(conditional).status());
+        assertEquals(2, hits.size());
+        assertEquals(1, downloader.getMerged());
+    }
+
+    @Test
+    void visibleRequestsGoFirst() throws Exception {
+        gate = new CountDownLatch(1);
+        SkinDownloader downloader = downloader(1);
+        CompletableFuture<SkinDownloader.Result> blocker = downloader.download(url("/blocker"), dir.resolve("blocker.png"), SkinDownloader.Priority.VISIBLE);
+        CompletableFuture<SkinDownloader.Result> background = downloader.download(url("/background"), dir.resolve("background.png"), SkinDownloader.Priority.BACKGROUND);
+        CompletableFuture<SkinDownloader.Result> promoted = downloader.download(url("/promoted"), dir.resolve("promoted.png"), SkinDownloader.Priority.BACKGROUND);
+        CompletableFuture<SkinDownloader.Result> visible = downloader.download(url("/visible"), dir.resolve("visible.png"), SkinDownloader.Priority.VISIBLE);
+        downloader.prioritize(url("/promoted"), SkinDownloader.Priority.VISIBLE);
+        gate.countDown();
+        CompletableFuture.allOf(blocker, background, promoted, visible).get(10, TimeUnit.SECONDS);
+
+        // The promoted request was queued before the visible one
+        assertEquals(List.of("/blocker", "/promoted", "/visible", "/background"), hits);
+    }
+}
@@ -0,0 +1,113 @@
+package com.goodbird.player2npc.inventory;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares {@link InventoryManager} with {@link LegacyInventoryManager} on the operations the
+ * controller does most: filling the inventory, counting an item and autosaving. Run with
+ * {@code ./gradlew benchmark}, the plain test task skips it.
+ */
+@Tag("benchmark")
+class InventoryManagerBenchmark {
+    private static final int WARMUP_ROUNDS = 20_000;
+    private static final int ROUNDS = 100_000;
+    private static final Item[] ITEMS = {Items.DIRT, Items.COBBLESTONE, Items.OAK_LOG, Items.TORCH, Items.IRON_INGOT};
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    void fill() {
+        compare("fill 36 slots",
+                () -> {
+                    InventoryManager inventory = new InventoryManager();
+                    fill(inventory::addItem);
+                    return inventory.getFreeSlotCount();
+                },
+                () -> {
+                    LegacyInventoryManager inventory = new LegacyInventoryManager();
+                    fill(inventory::addItem);
+                    return inventory.getItems().size();
+                });
+    }
+
+    @Test
+    void countItem() {
+        InventoryManager indexed = new InventoryManager();
+        LegacyInventoryManager legacy = new LegacyInventoryManager();
+        fill(indexed::addItem);
+        fill(legacy::addItem);
+        // The controller reads the held stack every tick, which lends its slot
+        indexed.getSelectedStack();
+        assertEquals(countLegacy(legacy, Items.TORCH), indexed.getItemCount(Items.TORCH));
+
+        compare("count item", () -> indexed.getItemCount(Items.TORCH), () -> countLegacy(legacy, Items.TORCH));
+    }
+
+    @Test
+    void autosaveUnchanged() {
+        InventoryManager indexed = new InventoryManager();
+        LegacyInventoryManager legacy = new LegacyInventoryManager();
+        fill(indexed::addItem);
+        fill(legacy::addItem);
+        indexed.getSelectedStack();
+
+        compare("autosave", () -> indexed.writeToNbt().getSize(), () -> legacy.writeToNbt().getSize());
+    }
+
+    private static void fill(Consumer<ItemStack> add) {
+        for (int i = 0; i < 40; i++) {
+            add.accept(new ItemStack(ITEMS[i % ITEMS.length], 1 + i % 16 * 4));
+        }
+    }
+
+    // What callers did before the indices: scan every slot
+    private static int countLegacy(LegacyInventoryManager inventory, Item item) {
+        int count = 0;
+        for (ItemStack stack : inventory.getItems()) {
+            if (stack.isOf(item)) {
+                count += stack.getCount();
+            }
+        }
+        return count;
+    }
+
+    private static void compare(String name, IntSupplier indexed, IntSupplier legacy) {
+        double indexedNs = measure(indexed);
+        double legacyNs = measure(legacy);
+        System.out.printf("%-16s indexed %10.1f ns/op   legacy %10.1f ns/op   x%.2f%n",
+                name, indexedNs, legacyNs, legacyNs / indexedNs);
+    }
+
+    private static double measure(IntSupplier operation) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += operation.getAsInt();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += operation.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Keeps the JIT from dropping the work
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed / (double) ROUNDS;
+    }
+}
@@ -0,0 +1,134 @@
+package com.goodbird.player2npc.inventory;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.tag.ItemTags;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the indices follow stacks changed in place through the live references.
+ */
+class InventoryManagerTest {
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    void returnsLiveStacks() {
+        InventoryManager inventory = new InventoryManager();
+        ItemStack stack = new ItemStack(Items.DIRT, 5);
+        inventory.setStack(3, stack);
+
+        assertSame(stack, inventory.getStack(3));
+        assertSame(stack, inventory.getItems().get(3));
+        inventory.setSelectedSlot(3);
+        assertSame(stack, inventory.getSelectedStack());
+    }
+
+    @Test
+    void reindexesStacksChangedInPlace() {
+        InventoryManager inventory = new InventoryManager();
+        inventory.addItem(new ItemStack(Items.COBBLESTONE, 10));
+        inventory.getStack(0).decrement(4);
+        assertEquals(6, inventory.getItemCount(Items.COBBLESTONE));
+
+        inventory.getItems().get(0).decrement(6);
+        assertEquals(0, inventory.getItemCount(Items.COBBLESTONE));
+        assertEquals(36, inventory.getFreeSlotCount());
+    }
+
+    @Test
+    void followsTheStackPassedToSetStack() {
+        InventoryManager inventory = new InventoryManager();
+        ItemStack logs = new ItemStack(Items.OAK_LOG, 5);
+        inventory.setStack(7, logs);
+        logs.increment(10);
+
+        assertEquals(15, inventory.getItemCount(Items.OAK_LOG));
+        assertEquals(15, inventory.getItemCount(ItemTags.LOGS));
+    }
+
+    @Test
+    void topsUpLentStacksWithTheirCurrentCount() {
+        InventoryManager inventory = new InventoryManager();
+        inventory.addItem(new ItemStack(Items.DIRT, 10));
+        inventory.getStack(0).setCount(60);
+
+        inventory.addItem(new ItemStack(Items.DIRT, 8));
+        assertEquals(64, inventory.getStack(0).getCount());
+        assertEquals(4, inventory.getStack(1).getCount());
+        assertEquals(68, inventory.getItemCount(Items.DIRT));
+    }
+
+    @Test
+    void emptiedLentSlotIsReused() {
+        InventoryManager inventory = new InventoryManager();
+        inventory.addItem(new ItemStack(Items.DIRT, 10));
+        inventory.addItem(new ItemStack(Items.STONE, 10));
+        inventory.getStack(0).setCount(0);
+
+        inventory.addItem(new ItemStack(Items.SAND, 3));
+        assertEquals(Items.SAND, inventory.getStack(0).getItem());
+        assertEquals(0, inventory.getItemCount(Items.DIRT));
+        assertEquals(34, inventory.getFreeSlotCount());
+    }
+
+    @Test
+    void changesInPlaceMarkTheInventoryDirty() {
+        InventoryManager inventory = new InventoryManager();
+        inventory.addItem(new ItemStack(Items.IRON_PICKAXE));
+        ItemStack pickaxe = inventory.getStack(0);
+        inventory.writeToNbt();
+        assertFalse(inventory.isDirty());
+
+        pickaxe.setDamage(3);
+        assertTrue(inventory.isDirty());
+
+        InventoryManager read = new InventoryManager();
+        read.readFromNbt(inventory.writeToNbt());
+        assertEquals(3, read.getStack(0).getDamage());
+    }
+
+    @Test
+    void callersCanChangeTheWrittenTag() {
+        InventoryManager inventory = new InventoryManager();
+        inventory.addItem(new ItemStack(Items.DIRT, 5));
+        inventory.writeToNbt().putString("Extra", "x");
+        NbtCompound tag = inventory.writeToNbt();
+        tag.putString("Other", "y");
+
+        assertFalse(inventory.writeToNbt().contains("Extra"));
+        assertFalse(inventory.writeToNbt().contains("Other"));
+    }
+
+    @Test
+    void roundTripsThroughNbt() {
+        InventoryManager inventory = new InventoryManager();
+        inventory.addItem(new ItemStack(Items.DIRT, 64));
+        inventory.addItem(new ItemStack(Items.DIRT, 3));
+        inventory.setStack(20, new ItemStack(Items.TORCH, 12));
+        inventory.setSelectedSlot(20);
+
+        InventoryManager read = new InventoryManager();
+        read.readFromNbt(inventory.writeToNbt());
+        List<ItemStack> items = read.getItems();
+        assertEquals(67, read.getItemCount(Items.DIRT));
+        assertEquals(12, items.get(20).getCount());
+        assertEquals(20, read.getSelectedSlot());
+        assertEquals(33, read.getFreeSlotCount());
+    }
+}